@@ -0,0 +1,91 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+//
+// Author: Daniel Sage
+//
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+package orientation.benchmark;
+
+import orientation.GroupImage;
+import orientation.LogMute;
+import orientation.OrientationParameters;
+import orientation.OrientationService;
+import orientation.TestImage;
+import orientation.imageware.Builder;
+import orientation.imageware.ImageWare;
+
+/**
+ * Synthetic inputs of the benchmarks, generated by TestImage so that the 
+ * results are reproducible from one machine to another.
+ */
+public class BenchmarkImages {
+
+	/**
+	 * Returns a square chirp image of size x size pixels.
+	 */
+	public static ImageWare chirp(int size) {
+		float pixels[] = (float[]) TestImage.chirp(size, size).getPixels();
+		ImageWare image = Builder.create(size, size, 1, ImageWare.FLOAT);
+		System.arraycopy(pixels, 0, image.getSliceFloat(0), 0, pixels.length);
+		return image;
+	}
+
+	/**
+	 * Returns a square chirp image of size x size pixels as a flat row-major
+	 * array, the layout of the Gaussian filter.
+	 */
+	public static double[] chirpArray(int size) {
+		float pixels[] = (float[]) TestImage.chirp(size, size).getPixels();
+		double signal[] = new double[size * size];
+		for (int k = 0; k < signal.length; k++)
+			signal[k] = pixels[k];
+		return signal;
+	}
+
+	/**
+	 * Returns the parameters of the analysis with all the features of the 
+	 * structure tensor.
+	 */
+	public static OrientationParameters parameters(int gradient, int threads) {
+		OrientationParameters params = new OrientationParameters(OrientationService.ANALYSIS);
+		params.gradient = gradient;
+		params.sigmaST = 2;
+		params.threads = threads;
+		params.view[OrientationParameters.TENSOR_ENERGY] = true;
+		params.view[OrientationParameters.TENSOR_ORIENTATION] = true;
+		params.view[OrientationParameters.TENSOR_COHERENCY] = true;
+		params.view[OrientationParameters.TENSOR_DIRECTIONALITY] = true;
+		params.view[OrientationParameters.TENSOR_FA] = true;
+		return params;
+	}
+
+	/**
+	 * Returns the GroupImage of a chirp image with the maps allocated.
+	 */
+	public static GroupImage group(int size, OrientationParameters params) {
+		return new GroupImage(new LogMute(), chirp(size), params);
+	}
+}
@@ -0,0 +1,89 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+//
+// Author: Daniel Sage
+//
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+package orientation.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import orientation.TestImage;
+import orientation.WorkerPool;
+import orientation.fft.ComplexSignal;
+import orientation.fft.FFT2D;
+
+/**
+ * Forward and inverse 2D FFT of a chirp image, the core of the Fourier 
+ * gradient. The sizes include a non power-of-two size (1000). The bands
+ * of rows and of columns run on the worker pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx12g" })
+public class FFT2DBenchmark {
+
+	@Param({ "256", "1000", "1024", "4096", "8192" })
+	public int				size;
+
+	@Param({ "1", "2", "4", "8" })
+	public int				threads;
+
+	private ComplexSignal	signal;
+	private ComplexSignal	fourier;
+
+	@Setup
+	public void setup() {
+		WorkerPool.setParallelism(threads);
+		signal = new ComplexSignal((float[]) TestImage.chirp(size, size).getPixels(), size, size);
+		fourier = FFT2D.transform(signal);
+	}
+
+	@Benchmark
+	public ComplexSignal transform() {
+		return FFT2D.transform(signal);
+	}
+
+	@Benchmark
+	public ComplexSignal inverse() {
+		return FFT2D.inverse(fourier);
+	}
+}
@@ -0,0 +1,91 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+//
+// Author: Daniel Sage
+//
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+package orientation.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import orientation.LogMute;
+import orientation.filters.Gaussian;
+
+/**
+ * Recursive (IIR) Gaussian filter of the structure tensor on a chirp image,
+ * on a double and on a float signal (float precision option). The filter 
+ * works in place, every invocation smooths the previous result, which does
+ * not change its cost.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx12g" })
+public class GaussianBenchmark {
+
+	@Param({ "256", "1024", "4096", "8192" })
+	public int		size;
+
+	@Param({ "1", "4" })
+	public double	sigma;
+
+	private double	signal[];
+	private float	single[];
+
+	@Setup
+	public void setup() {
+		signal = BenchmarkImages.chirpArray(size);
+		single = new float[signal.length];
+		for (int k = 0; k < signal.length; k++)
+			single[k] = (float) signal[k];
+	}
+
+	@Benchmark
+	public double[] gaussian() {
+		new Gaussian(new LogMute(), 0, signal, sigma, size, size).run();
+		return signal;
+	}
+
+	@Benchmark
+	public float[] gaussianFloat() {
+		new Gaussian(new LogMute(), 0, single, sigma, size, size).run();
+		return single;
+	}
+}
@@ -0,0 +1,98 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+//
+// Author: Daniel Sage
+//
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+package orientation.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import orientation.Gradient;
+import orientation.GroupImage;
+import orientation.LogMute;
+import orientation.OrientationParameters;
+import orientation.WorkerPool;
+import orientation.filters.Hessian;
+
+/**
+ * Gradient of a chirp image for each method: cubic spline (0), finite 
+ * difference (1), Fourier (2), Riesz (3), Gaussian (4) and the Hessian (5),
+ * for several numbers of threads of the worker pool.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = { "-Xmx12g" })
+public class GradientBenchmark {
+
+	@Param({ "256", "1024", "4096", "8192" })
+	public int			size;
+
+	@Param({ "0", "1", "2", "3", "4", "5" })
+	public int			gradient;
+
+	@Param({ "1", "2", "4", "8" })
+	public int			threads;
+
+	private GroupImage	gim;
+	private Gradient	operator;
+	private Hessian		hessian;
+
+	@Setup
+	public void setup() {
+		OrientationParameters params = BenchmarkImages.parameters(gradient, threads);
+		WorkerPool.setParallelism(threads);
+		gim = BenchmarkImages.group(size, params);
+		if (gradient == OrientationParameters.HESSIAN)
+			hessian = new Hessian(new LogMute(), gim, params);
+		else
+			operator = new Gradient(new LogMute(), gim, params);
+	}
+
+	@Benchmark
+	public GroupImage gradient() {
+		if (hessian != null)
+			hessian.run(0);
+		else
+			operator.run(0);
+		return gim;
+	}
+}
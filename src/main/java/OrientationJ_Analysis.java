@@ -36,6 +36,7 @@ import orientation.OrientationParameters;
 import orientation.OrientationProcess;
 import orientation.OrientationResults;
 import orientation.OrientationService;
+import orientation.ScaleSpace;
 import orientation.imageware.ImageWare;
 
 public class OrientationJ_Analysis implements PlugIn {
@@ -58,6 +59,13 @@ public class OrientationJ_Analysis implements PlugIn {
 				return;
 			}
 			WalkBarOrientationJ walk = new WalkBarOrientationJ();
+			if (params.scales.length > 0) {
+				ScaleSpace scales = new ScaleSpace(walk, source, params, params.scales);
+				scales.setSelection(ScaleSpace.getSelection(params.scaleSelection));
+				scales.run();
+				scales.show(1);
+				return;
+			}
 			OrientationProcess process = new OrientationProcess(walk, source, params);
 			process.run();
 			OrientationResults.show(process.getGroupImage(), params, 1);
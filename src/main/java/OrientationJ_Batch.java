@@ -0,0 +1,106 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+// 
+// Author: Daniel Sage
+// 
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//  
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey 
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and 
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+import java.io.File;
+import java.util.List;
+
+import ij.IJ;
+import ij.Macro;
+import ij.plugin.PlugIn;
+import orientation.BatchProcess;
+import orientation.OrientationParameters;
+import orientation.OrientationService;
+
+/**
+ * Headless batch processing of all the images of a directory.
+ * 
+ * Macro: run("OrientationJ Batch", "input=/data/in output=/data/out 
+ * service=analysis tensor=2.0 gradient=0 energy=on orientation=on");
+ * 
+ * Command line: java -cp ij.jar:OrientationJ.jar OrientationJ_Batch 
+ * input=/data/in output=/data/out service=distribution tensor=2.0 ...
+ * 
+ * The service is analysis, distribution, vectorfield or harris, the other 
+ * keys are the macro keys of this service. The optional keys concurrent 
+ * (number of images processed at the same time) and memory (budget in MB)
+ * limit the resources used by the batch.
+ */
+public class OrientationJ_Batch implements PlugIn {
+
+	public static void main(String args[]) {
+		String options = "";
+		for (String arg : args)
+			options += arg + " ";
+		System.exit(batch(options) ? 0 : 1);
+	}
+
+	public void run(String arg) {
+		String options = Macro.getOptions();
+		if (options == null) {
+			IJ.error("OrientationJ Batch", "Run this command from a macro, for example:\n" + 
+					"run(\"OrientationJ Batch\", \"input=/data/in output=/data/out service=analysis tensor=2.0 energy=on\");");
+			return;
+		}
+		batch(options);
+	}
+
+	private static boolean batch(String options) {
+		String input = Macro.getValue(options, "input", "");
+		String output = Macro.getValue(options, "output", "");
+		if (input.equals("") || output.equals("")) {
+			IJ.log("OrientationJ Batch: the keys input and output are required");
+			return false;
+		}
+		OrientationService service;
+		try {
+			service = OrientationService.valueOf(Macro.getValue(options, "service", "analysis").toUpperCase());
+		}
+		catch (IllegalArgumentException ex) {
+			service = null;
+		}
+		if (service != OrientationService.ANALYSIS && service != OrientationService.DISTRIBUTION 
+				&& service != OrientationService.VECTORFIELD && service != OrientationService.HARRIS) {
+			IJ.log("OrientationJ Batch: the service is analysis, distribution, vectorfield or harris");
+			return false;
+		}
+
+		OrientationParameters params = new OrientationParameters(service);
+		params.getMacroParameters(options);
+		BatchProcess batch = new BatchProcess(params, new File(output));
+		String concurrent = Macro.getValue(options, "concurrent", "");
+		if (!concurrent.equals(""))
+			batch.setConcurrent(Integer.parseInt(concurrent));
+		String memory = Macro.getValue(options, "memory", "");
+		if (!memory.equals(""))
+			batch.setMemoryBudget(Long.parseLong(memory) * 1024 * 1024);
+
+		List<File> files = BatchProcess.list(new File(input));
+		return batch.run(files) == files.size();
+	}
+}
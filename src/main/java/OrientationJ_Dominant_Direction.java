@@ -28,8 +28,6 @@
 //=============================================================================================================
 
 import java.text.DecimalFormat;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import ij.IJ;
 import ij.ImagePlus;
@@ -95,12 +93,7 @@ public class OrientationJ_Dominant_Direction implements PlugIn {
 		params.gradient = OrientationParameters.GRADIENT_CUBIC_SPLINE;
 		GroupImage gim = new GroupImage(log, ip, params);
 		Gradient gradient = new Gradient(log, gim, params);
-		
-		ExecutorService executor = Executors.newFixedThreadPool(1);
-		executor.execute(gradient);
-		executor.shutdown();
-		while (!executor.isTerminated()) {
-		}
+		gradient.run();
 
 		int nx = gim.nx;
 		int ny = gim.ny;
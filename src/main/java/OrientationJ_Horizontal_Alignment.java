@@ -27,8 +27,6 @@
 // License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
 //=============================================================================================================
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import ij.IJ;
 import ij.ImagePlus;
@@ -98,12 +96,7 @@ public class OrientationJ_Horizontal_Alignment implements PlugIn {
 		params.gradient = OrientationParameters.GRADIENT_CUBIC_SPLINE;
 		GroupImage gim = new GroupImage(log, ip, params);
 		Gradient gradient = new Gradient(log, gim, params);
-		
-		ExecutorService executor = Executors.newFixedThreadPool(1);
-		executor.execute(gradient);
-		executor.shutdown();
-		while (!executor.isTerminated()) {
-		}
+		gradient.run();
 
 		int nx = gim.nx;
 		int ny = gim.ny;
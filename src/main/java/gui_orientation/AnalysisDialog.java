@@ -376,10 +376,11 @@ public class AnalysisDialog extends JDialog implements ActionListener, ChangeLis
 		if (e.getSource() == bnKMeans) {
 			if (gim == null)
 				return;
-			if (gim.orientation == null)
+			ImageWare orientation = gim.getFeature(OrientationParameters.TENSOR_ORIENTATION);
+			if (orientation == null)
 				return;
 			OrientationKMeans kmeans = new OrientationKMeans();
-			ImageWare out = kmeans.run(gim.orientation, spnNbClasses.get(), 1000);
+			ImageWare out = kmeans.run(orientation, spnNbClasses.get(), 1000);
 			out.show("OJ-KMeans " + spnNbClasses.get());
 		}
 		else if (e.getSource() == cmbColorHSB) 
@@ -491,7 +492,11 @@ public class AnalysisDialog extends JDialog implements ActionListener, ChangeLis
 			setCursor(new Cursor(Cursor.WAIT_CURSOR));
 			OrientationProcess process = new OrientationProcess(walk, source, params);
 			process.start();
-			while (process.isAlive()) {
+			try {
+				process.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
 			}
 			gim = process.getGroupImage();
 			OrientationResults.show(params.view, gim, params, ++countRun);
@@ -536,11 +541,11 @@ public class AnalysisDialog extends JDialog implements ActionListener, ChangeLis
 				if (gim != null) {
 					bnShow[OrientationParameters.GRADIENT_HORIZONTAL].setEnabled(gim.gx != null || gim.hxx != null);
 					bnShow[OrientationParameters.GRADIENT_VERTICAL].setEnabled(gim.gy != null || gim.hyy != null);
-					bnShow[OrientationParameters.TENSOR_ORIENTATION].setEnabled(gim.orientation != null);
-					bnShow[OrientationParameters.TENSOR_COHERENCY].setEnabled(gim.coherency != null);
-					bnShow[OrientationParameters.TENSOR_DIRECTIONALITY].setEnabled(gim.directionality != null);
-					bnShow[OrientationParameters.TENSOR_FA].setEnabled(gim.fa != null);
-					bnShow[OrientationParameters.TENSOR_ENERGY].setEnabled(gim.energy != null);
+					bnShow[OrientationParameters.TENSOR_ORIENTATION].setEnabled(gim.hasFeature(OrientationParameters.TENSOR_ORIENTATION));
+					bnShow[OrientationParameters.TENSOR_COHERENCY].setEnabled(gim.hasFeature(OrientationParameters.TENSOR_COHERENCY));
+					bnShow[OrientationParameters.TENSOR_DIRECTIONALITY].setEnabled(gim.hasFeature(OrientationParameters.TENSOR_DIRECTIONALITY));
+					bnShow[OrientationParameters.TENSOR_FA].setEnabled(gim.hasFeature(OrientationParameters.TENSOR_FA));
+					bnShow[OrientationParameters.TENSOR_ENERGY].setEnabled(gim.hasFeature(OrientationParameters.TENSOR_ENERGY));
 					bnShow[OrientationParameters.HARRIS].setEnabled(gim.harris != null);
 					bnShow[OrientationParameters.SURVEY].setEnabled(gim != null);
 					bnShow[OrientationParameters.DIST_HISTO_PLOT].setEnabled(gim != null);
@@ -548,7 +553,7 @@ public class AnalysisDialog extends JDialog implements ActionListener, ChangeLis
 					bnShow[OrientationParameters.DIST_ORIENTATION].setEnabled(gim != null);
 					bnShow[OrientationParameters.DIST_HISTO_TABLE].setEnabled(gim != null);
 					bnDetect.setEnabled(gim.harris != null);
-					bnKMeans.setEnabled(gim.orientation != null);
+					bnKMeans.setEnabled(gim.hasFeature(OrientationParameters.TENSOR_ORIENTATION));
 				}
 				else {
 					bnDetect.setEnabled(false);
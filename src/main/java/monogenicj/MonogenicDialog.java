@@ -77,6 +77,7 @@ public class MonogenicDialog extends JDialog implements ActionListener, WindowLi
 	
 	private JCheckBox		ckSignedDir		= new JCheckBox("Signed Dir.", false);
 	private JCheckBox		ckPrefilter		= new JCheckBox("Prefilter", false);
+	private JCheckBox		ckFloat			= new JCheckBox("Float precision", false);
 	private JCheckBox		ckGradientX		= new JCheckBox("Riesz X", false);
 	private JCheckBox		ckGradientY		= new JCheckBox("Riesz Y", false);
 	private JCheckBox		ckOrientation	= new JCheckBox("Orientation", true);
@@ -153,6 +154,7 @@ public class MonogenicDialog extends JDialog implements ActionListener, WindowLi
 		settings.record("MonogenicJ-cmbStacked",	cmbStacked,		"Stacked presentation");
 		settings.record("MonogenicJ-ckPrefilter",	ckPrefilter,	false);
 		settings.record("MonogenicJ-ckSignedDir",	ckSignedDir,	false);
+		settings.record("MonogenicJ-ckFloat",		ckFloat,		false);
 		
 		settings.loadRecordedItems();
 	}
@@ -185,6 +187,7 @@ public class MonogenicDialog extends JDialog implements ActionListener, WindowLi
 		pn0.place(3, 1, spnSigma);
 		//pn0.place(4, 0, ckPrefilter);
 		//pn0.place(4, 1, ckSignedDir);
+		pn0.place(5, 0, 2, 1, ckFloat);
 
 		
 		GridPanel pnRun = new GridPanel(false, 0);
@@ -316,7 +319,7 @@ public class MonogenicDialog extends JDialog implements ActionListener, WindowLi
 				boolean pyramid = rbPyramid.isSelected();
 				
 				mgim = new MonogenicImage(walk, imp.getProcessor(), scale, pyramid, spnSigma.get());
-				mgim.compute(spnSigma.get(), 10e-8, ckPrefilter.isSelected(), ckSignedDir.isSelected());
+				mgim.compute(spnSigma.get(), 10e-8, ckPrefilter.isSelected(), ckSignedDir.isSelected(), ckFloat.isSelected());
 		
 				if (ckLaplace.isSelected())
 					showFeatures(showLaplace);
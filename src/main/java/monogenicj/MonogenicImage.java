@@ -120,6 +120,15 @@ public class MonogenicImage {
 	/**
 	*/
 	public void compute(double sigma, double epsilon, boolean prefilter, boolean signedDir) {
+		compute(sigma, epsilon, prefilter, signedDir, false);
+	}
+
+	/**
+	* With floatPrecision, the Riesz transform is computed in single precision
+	* (filters, spectra and channels in float), half the memory of the double
+	* precision. The polyharmonic wavelet transforms remain in double.
+	*/
+	public void compute(double sigma, double epsilon, boolean prefilter, boolean signedDir, boolean floatPrecision) {
 	
 		//----------------------------------
 		// WT
@@ -132,7 +141,7 @@ public class MonogenicImage {
 		//----------------------------------
 		walk.progress("Riesz", 50);
 		ImageWare pre = (prefilter ? prefilter(source) : source);
-		RieszTransform rt = new RieszTransform(nx, ny, 1, true);
+		RieszTransform rt = new RieszTransform(nx, ny, 1, true, floatPrecision);
 		ImageWare rieszChannels[] = rt.analysis(pre);
 
 		rx = computePolyharmonicWavelets(pyramid, rieszChannels[0]);	
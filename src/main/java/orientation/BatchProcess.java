@@ -0,0 +1,392 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+//
+// Author: Daniel Sage
+//
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+package orientation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.io.FileInfo;
+import ij.io.FileSaver;
+import ij.io.TiffDecoder;
+import orientation.imageware.Builder;
+import orientation.imageware.ImageWare;
+import orientation.imageware.MappedFloatSet;
+
+/**
+ * Headless batch processing of a list of images.
+ *
+ * Every image is opened from the disk, processed by OrientationProcess
+ * and the requested views are written in the output directory: the feature
+ * maps as TIFF files, the histogram of orientation, the vectors of the vector
+ * field and the Harris corners as CSV tables. No window is opened.
+ *
+ * Several images are processed at the same time, each of them using the
+ * shared WorkerPool. The memory needed by an image is estimated before
+ * opening it and reserved from a memory budget, the images wait until
+ * enough memory is free. An uncompressed TIFF larger than the budget is,
+ * if its type and layout allow it, memory-mapped and processed out-of-core, its maps are computed in raw 
+ * files and exported slice by slice.
+ *
+ * @author Daniel Sage
+ */
+public class BatchProcess {
+
+	private static final long		MB			= 1024 * 1024;
+
+	private OrientationParameters	params;
+	private File						output;
+	private int						concurrent	= WorkerPool.getParallelism();
+	private long						budget		= (long) (Runtime.getRuntime().maxMemory() * 0.75);
+
+	public BatchProcess(OrientationParameters params, File output) {
+		this.params = params;
+		this.output = output;
+	}
+
+	/**
+	 * Sets the number of images processed at the same time.
+	 */
+	public void setConcurrent(int concurrent) {
+		this.concurrent = Math.max(1, concurrent);
+	}
+
+	/**
+	 * Sets the memory budget in bytes shared by the images in process.
+	 */
+	public void setMemoryBudget(long budget) {
+		this.budget = Math.max(MB, budget);
+	}
+
+	/**
+	 * Returns the image files of a directory sorted by name, or the file
+	 * itself if it is not a directory.
+	 */
+	public static List<File> list(File input) {
+		ArrayList<File> files = new ArrayList<File>();
+		if (!input.isDirectory()) {
+			files.add(input);
+			return files;
+		}
+		File[] all = input.listFiles();
+		if (all == null)
+			return files;
+		Arrays.sort(all);
+		for (File file : all) {
+			String name = file.getName().toLowerCase();
+			if (file.isFile() && !name.startsWith("."))
+				if (name.endsWith(".tif") || name.endsWith(".tiff") || name.endsWith(".png")
+						|| name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".gif") || name.endsWith(".bmp"))
+					files.add(file);
+		}
+		return files;
+	}
+
+	/**
+	 * Processes all the files and returns the number of files successfully
+	 * processed. Returns when all the files are done.
+	 */
+	public int run(final List<File> files) {
+		output.mkdirs();
+		final int permits = (int) (budget / MB);
+		final Semaphore memory = new Semaphore(permits, true);
+		final AtomicInteger next = new AtomicInteger(0);
+		final AtomicInteger success = new AtomicInteger(0);
+		long chrono = System.currentTimeMillis();
+
+		Thread workers[] = new Thread[Math.min(concurrent, Math.max(1, files.size()))];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread("OrientationJ-Batch-" + i) {
+				@Override
+				public void run() {
+					for (int k = next.getAndIncrement(); k < files.size(); k = next.getAndIncrement()) {
+						File file = files.get(k);
+						boolean mapped = isMapped(file);
+						int reserved = (int) Math.min(permits, Math.max(1, estimate(file, mapped) / MB));
+						memory.acquireUninterruptibly(reserved);
+						try {
+							long start = System.currentTimeMillis();
+							process(file, mapped);
+							success.incrementAndGet();
+							IJ.log(file.getName() + " processed in " + (System.currentTimeMillis() - start) + " ms");
+						}
+						catch (Exception ex) {
+							IJ.log("Error in " + file.getName() + ": " + ex);
+						}
+						finally {
+							memory.release(reserved);
+						}
+					}
+				}
+			};
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return success.get();
+			}
+		}
+		double hours = Math.max(1, System.currentTimeMillis() - chrono) / 3600000.0;
+		IJ.log(success.get() + "/" + files.size() + " images processed, " + Math.round(success.get() / hours) + " images/hour");
+		return success.get();
+	}
+
+	/**
+	 * Processes one file and writes its results.
+	 */
+	public void process(File file, boolean mapped) throws IOException {
+		String base = file.getName();
+		if (base.lastIndexOf('.') > 0)
+			base = base.substring(0, base.lastIndexOf('.'));
+
+		OrientationParameters p = params.duplicate();
+		ImageWare source = null;
+		File maps = null;
+		OrientationProcess process = null;
+		try {
+			if (mapped) {
+				maps = new File(output, base + "-maps");
+				maps.mkdirs();
+				p.mapped = maps.getAbsolutePath();
+				source = Builder.openMapped(file);
+			}
+			else {
+				ImagePlus imp = IJ.openImage(file.getAbsolutePath());
+				if (imp == null)
+					throw new IOException("Unable to open the image");
+				if (imp.getType() != ImagePlus.GRAY8 && imp.getType() != ImagePlus.GRAY16 && imp.getType() != ImagePlus.GRAY32)
+					throw new IOException("Support only the 8-bits, 16-bits or 32-bits images");
+				source = Builder.create(imp);
+			}
+
+			process = new OrientationProcess(new LogMute(), source, p);
+			process.run();
+			GroupImage gim = process.getGroupImage();
+			ProcessMetrics.Probe display = gim.getMetrics().begin(ProcessMetrics.DISPLAY, -1);
+
+			if (p.isServiceDistribution()) {
+				float histo[][] = OrientationResults.distribution(gim, p);
+				if (p.view[OrientationParameters.DIST_HISTO_TABLE] || p.view[OrientationParameters.DIST_HISTO_PLOT])
+					OrientationResults.createTableDistribution(histo).saveAs(new File(output, base + "-distribution.csv").getAbsolutePath());
+			}
+			if (p.isServiceVectorField()) {
+				Clusters clusters[] = OrientationResults.computeVectorField(gim, p);
+				if (clusters != null)
+					OrientationResults.createTableVectorField(clusters, p.vectorGrid).saveAs(new File(output, base + "-vectors.csv").getAbsolutePath());
+			}
+			if (p.isServiceHarris()) {
+				ArrayList<Corner> corners = OrientationResults.detectCorners(gim, p);
+				OrientationResults.createTableCorners(corners).saveAs(new File(output, base + "-corners.csv").getAbsolutePath());
+			}
+
+			for (int feature = 0; feature < OrientationParameters.NB_FEATURES; feature++) {
+				if (!p.view[feature])
+					continue;
+				if (feature == OrientationParameters.DIST_HISTO_PLOT || feature == OrientationParameters.DIST_HISTO_TABLE)
+					continue;
+				// The memory-mapped maps are read and rescaled slice by slice
+				ImagePlus imp = (mapped ? gim.createVirtualFeature(feature, 1, !p.radian, p) : null);
+				if (imp == null)
+					imp = gim.createImageFeature(feature, 1, !p.radian, p);
+				if (imp == null)
+					continue;
+				String path = new File(output, base + "-" + OrientationParameters.name[feature].replace(' ', '-') + ".tif").getAbsolutePath();
+				FileSaver saver = new FileSaver(imp);
+				boolean saved = (imp.getStackSize() > 1 ? saver.saveAsTiffStack(path) : saver.saveAsTiff(path));
+				if (!saved)
+					throw new IOException("Unable to write " + path);
+			}
+			gim.getMetrics().end(display);
+
+			if (p.metrics)
+				gim.getMetrics().createTable().saveAs(new File(output, base + "-metrics.csv").getAbsolutePath());
+		}
+		finally {
+			try {
+				if (process != null && process.getGroupImage() != null)
+					process.getGroupImage().close();
+			}
+			finally {
+				if (source instanceof MappedFloatSet)
+					((MappedFloatSet) source).close();
+				if (maps != null)
+					delete(maps);
+			}
+		}
+	}
+
+	/**
+	 * Deletes the directory of the memory-mapped maps, they are exported as 
+	 * TIFF files.
+	 */
+	private static void delete(File maps) {
+		File files[] = maps.listFiles();
+		if (files != null)
+			for (File file : files)
+				if (file.getName().endsWith(".raw"))
+					file.delete();
+		maps.delete();
+	}
+
+	/**
+	 * Returns true if the file is a TIFF which is too large for the memory 
+	 * budget and which can be memory-mapped: uncompressed, 8-bit, 16-bit 
+	 * unsigned or 32-bit float, with contiguous strips and equally spaced 
+	 * slices. The other files are processed in memory.
+	 */
+	private boolean isMapped(File file) {
+		FileInfo info = getTiffInfo(file);
+		if (info == null || info.compression > FileInfo.COMPRESSION_NONE)
+			return false;
+		if (info.fileType != FileInfo.GRAY8 && info.fileType != FileInfo.GRAY16_UNSIGNED && info.fileType != FileInfo.GRAY32_FLOAT)
+			return false;
+		if (estimate(file, false) <= budget)
+			return false;
+		// The slices are mapped at their first access, opening only checks the layout
+		try {
+			Builder.openMapped(file).close();
+			return true;
+		}
+		catch (IOException ex) {
+			IJ.log(file.getName() + " processed in memory: " + ex.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Estimates the memory needed to process a file: the source image, its
+	 * float copy, the gradient (unless streaming) and the requested maps,
+	 * plus one map for the export. In the mapped case, only the slices in
+	 * process are in memory. The size of the image is read from the header 
+	 * of the file, the size of the file is used only if the header cannot be
+	 * read.
+	 */
+	private long estimate(File file, boolean mapped) {
+		long pixels;
+		long slice;
+		int bytes = 1;
+		FileInfo info = getTiffInfo(file);
+		int size[] = (info == null ? getImageSize(file) : null);
+		if (info != null) {
+			slice = (long) info.width * info.height;
+			pixels = slice * Math.max(1, info.nImages);
+			bytes = info.getBytesPerPixel();
+		}
+		else if (size != null) {
+			// The color images are opened as RGB
+			slice = (long) size[0] * size[1];
+			pixels = slice * size[2];
+			bytes = 4;
+		}
+		else {
+			pixels = file.length();
+			slice = pixels;
+		}
+		int maps = 2;
+		if (!params.streaming && !mapped)
+			maps += (params.gradient == OrientationParameters.HESSIAN ? 3 : 2);
+		for (int feature = 0; feature < OrientationParameters.NB_FEATURES; feature++)
+			if (params.isFeatureRequested(feature))
+				maps++;
+		if (mapped)
+			return slice * 4 * (maps + 3) * WorkerPool.getParallelism();
+		return pixels * (bytes + 4 * maps);
+	}
+
+	/**
+	 * Returns the width, the height and the number of images of a PNG, JPEG,
+	 * GIF or BMP file, read from its header, or null if no reader is found.
+	 */
+	private static int[] getImageSize(File file) {
+		ImageInputStream stream = null;
+		try {
+			stream = ImageIO.createImageInputStream(file);
+			if (stream == null)
+				return null;
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext())
+				return null;
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(stream, false, true);
+				// The number of images of an animated GIF needs a scan of the file
+				int images = reader.getNumImages(true);
+				return new int[] { reader.getWidth(0), reader.getHeight(0), Math.max(1, images) };
+			}
+			finally {
+				reader.dispose();
+			}
+		}
+		catch (IOException ex) {
+			return null;
+		}
+		finally {
+			if (stream != null)
+				try {
+					stream.close();
+				}
+				catch (IOException ex) {
+				}
+		}
+	}
+
+	private static FileInfo getTiffInfo(File file) {
+		String name = file.getName().toLowerCase();
+		if (!name.endsWith(".tif") && !name.endsWith(".tiff"))
+			return null;
+		try {
+			FileInfo info[] = new TiffDecoder(file.getParent() + File.separator, file.getName()).getTiffInfo();
+			if (info == null || info.length == 0)
+				return null;
+			if (info.length > 1)
+				info[0].nImages = info.length;
+			return info[0];
+		}
+		catch (IOException ex) {
+			return null;
+		}
+	}
+}
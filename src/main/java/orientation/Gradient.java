@@ -29,8 +29,12 @@
 
 package orientation;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import gui_orientation.WalkBarOrientationJ;
 import orientation.fft.ComplexSignal;
+import orientation.fft.ComplexSignalFloat;
 import orientation.fft.FFT2D;
 import orientation.filters.LaplacianOfGaussian;
 import orientation.imageware.Builder;
@@ -39,6 +43,25 @@ import orientation.riesz.RieszTransform;
 
 public class Gradient implements Runnable {
 
+	/** Maximal number of Riesz transforms kept in the cache */
+	private static final int MAX_RIESZ = 4;
+
+	/**
+	 * Riesz transforms keyed by the size and the precision, shared by the
+	 * slices and the tiles of a run. A new Gradient is created for every 
+	 * slice, the filter bank is built once per size.
+	 */
+	private static final LinkedHashMap<String, RieszTransform> riesz =
+		new LinkedHashMap<String, RieszTransform>(MAX_RIESZ, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, RieszTransform> eldest) {
+				return size() > MAX_RIESZ;
+			}
+		};
+
+	/** Number of runs in progress using the cache, guarded by riesz */
+	private static int users = 0;
+
 	private GroupImage gim;
 	private OrientationParameters params;
 	private LogAbstract log;
@@ -53,31 +76,88 @@ public class Gradient implements Runnable {
 	
 	@Override
 	public void run() {
+		for (int t=0; t<gim.nt; t++)
+			run(t);
+	}
+
+	/**
+	 * Computes the gradient of the slice t only. 
+	 * 
+	 * The slices are independent, this method could be called concurrently 
+	 * on different slices.
+	 */
+	public void run(int t) {
 		if (params.gradient == OrientationParameters.GRADIENT_CUBIC_SPLINE)
-			gradientSpline(gim, params.sigmaLoG);
+			gradientSpline(gim, params.sigmaLoG, t);
 		else if (params.gradient == OrientationParameters.GRADIENT_GAUSSIAN)
-			gradientGaussian(gim, 1);
+			gradientGaussian(gim, 1, t);
 		else if (params.gradient == OrientationParameters.GRADIENT_FOURIER_DOMAIN)
-			gradientFourier(gim);
+			gradientFourier(gim, t);
 		else if (params.gradient == OrientationParameters.GRADIENT_FINITE_DIFF)
-			gradientFiniteDifference(gim, params.sigmaLoG);
+			gradientFiniteDifference(gim, params.sigmaLoG, t);
 		else if (params.gradient == OrientationParameters.GRADIENT_RIESZ)
-			gradientRiesz(gim);
+			gradientRiesz(gim, t);
 	}
 
-	private void gradientRiesz(GroupImage gim) {
-		RieszTransform riesz = new RieszTransform(gim.nx, gim.ny, 1, false);
-		ImageWare slice = Builder.create(gim.nx, gim.ny, 1, ImageWare.FLOAT);
-		for (int t=0; t<gim.nt; t++) {
-			log.progress("Riesz", t*100.0/gim.nt);
-			gim.source.getXY(0, 0, t, slice);
-			ImageWare channels[] = riesz.analysis(slice);
-			gim.gx.putXY(0, 0, t, channels[0]);
-			gim.gy.putXY(0, 0, t, channels[1]);
+	/**
+	 * Returns the Riesz transform of the size of the GroupImage, built under 
+	 * the lock so that the concurrent slices do not build it several times.
+	 */
+	private RieszTransform getRiesz() {
+		String key = gim.nx + "x" + gim.ny + (params.floatPrecision ? "-float" : "-double");
+		synchronized (riesz) {
+			RieszTransform transform = riesz.get(key);
+			if (transform == null) {
+				transform = new RieszTransform(gim.nx, gim.ny, 1, false, params.floatPrecision);
+				riesz.put(key, transform);
+			}
+			return transform;
+		}
+	}
+
+	/**
+	 * Declares a run which uses the cache of the Riesz transforms, it has to
+	 * call releaseCache() at its end.
+	 */
+	public static void acquireCache() {
+		synchronized (riesz) {
+			users++;
 		}
 	}
+
+	/**
+	 * Ends a run declared by acquireCache(). The cache is emptied to release
+	 * the filter banks when no other run is in progress.
+	 */
+	public static void releaseCache() {
+		synchronized (riesz) {
+			users = Math.max(0, users - 1);
+			if (users == 0)
+				riesz.clear();
+		}
+	}
+
+	/**
+	 * Returns the slice t of the source, filtered by a LoG if sigmaLoG > 0.
+	 */
+	private ImageWare getSlice(GroupImage gim, double sigmaLoG, int t) {
+		ImageWare slice = Builder.create(gim.nx, gim.ny, 1, ImageWare.FLOAT);
+		gim.source.getXY(0, 0, t, slice);
+		if (sigmaLoG > 0)
+			return LaplacianOfGaussian.run(slice, sigmaLoG, sigmaLoG);
+		return slice;
+	}
+
+	private void gradientRiesz(GroupImage gim, int t) {
+		ImageWare slice = Builder.create(gim.nx, gim.ny, 1, ImageWare.FLOAT);
+		log.progress("Riesz", t*100.0/gim.nt);
+		gim.source.getXY(0, 0, t, slice);
+		ImageWare channels[] = getRiesz().analysis(slice);
+		gim.gx.putXY(0, 0, t, channels[0]);
+		gim.gy.putXY(0, 0, t, channels[1]);
+	}
 	
-	private void gradientGaussian(GroupImage gim, double sigma) {
+	private void gradientGaussian(GroupImage gim, double sigma, int t) {
 		int size = ((int)Math.ceil(sigma*4.0))*2 + 1;
 		int hsize = size / 2;
 		double kx[][] = new double[size][size];
@@ -98,141 +178,174 @@ public class Gradient implements Runnable {
 		
 		double w = 100.0/(gim.nt*gim.nx);
 		double block[][] = new double[size][size];
-		for(int t=0; t<gim.nt; t++) {
-			for (int x=0; x<gim.nx; x++) {
-				log.progress("Gradient", (t*gim.nx+x)*w);
-				for (int y=0; y<gim.ny; y++) {
-					gim.source.getNeighborhoodXY(x, y, t, block, ImageWare.MIRROR);
-					double sx = 0.0;
-					double sy = 0.0;
-					for(int j=0; j<size; j++) 
-					for(int i=0; i<size; i++) {
-						sx += block[i][j] * kx[i][j];
-						sy += block[i][j] * ky[i][j];
-					}
-					gim.gx.putPixel(x, y, t, sx);
-					gim.gy.putPixel(x, y, t, sy);
+		for (int x=0; x<gim.nx; x++) {
+			log.progress("Gradient", (t*gim.nx+x)*w);
+			for (int y=0; y<gim.ny; y++) {
+				gim.source.getNeighborhoodXY(x, y, t, block, ImageWare.MIRROR);
+				double sx = 0.0;
+				double sy = 0.0;
+				for(int j=0; j<size; j++) 
+				for(int i=0; i<size; i++) {
+					sx += block[i][j] * kx[i][j];
+					sy += block[i][j] * ky[i][j];
 				}
+				gim.gx.putPixel(x, y, t, sx);
+				gim.gy.putPixel(x, y, t, sy);
 			}
 		}
 	}
 	
-	private void gradientFourier(GroupImage gim) {
+	/**
+	 * Fourier-domain gradient: one real-input FFT of the source and one 
+	 * complex inverse FFT which returns gx in the real part and gy in the
+	 * imaginary part. In float precision, the spectra are stored in float.
+	 */
+	private void gradientFourier(GroupImage gim, int t) {
 		
-		int mx = (gim.nx % 2 == 0 ? gim.nx : gim.nx+1);
-		int my = (gim.ny % 2 == 0 ? gim.ny : gim.ny+1);
-		for (int t=0; t<gim.nt; t++) {
+		int nx = gim.nx;
+		int ny = gim.ny;
+		int mx = (nx % 2 == 0 ? nx : nx+1);
+		int my = (ny % 2 == 0 ? ny : ny+1);
+		int hx = mx/2 + 1;
+		log.progress("Fourier", t*100.0/gim.nt);
 
-			// Generate the filters in x and y
-			ComplexSignal filterx = new ComplexSignal(mx, my);
-			ComplexSignal filtery = new ComplexSignal(mx, my);
-			double rx = Math.PI / mx;
-			double ry = Math.PI / my;
+		// generate the source signal, padded by zeros
+		boolean single = params.floatPrecision;
+		ComplexSignal half = null;
+		ComplexSignal packed = null;
+		ComplexSignalFloat fhalf = null;
+		ComplexSignalFloat fpacked = null;
+		double row[] = new double[nx];
+		float frow[] = new float[nx];
+		if (single) {
+			float pix[] = new float[mx*my];
+			for (int y=0; y<ny; y++) {
+				gim.source.getX(0, y, t, frow);
+				System.arraycopy(frow, 0, pix, y*mx, nx);
+			}
+			fhalf = FFT2D.transformReal(pix, mx, my);
+			fpacked = new ComplexSignalFloat(mx, my);
+		}
+		else {
 			double pix[] = new double[mx*my];
-		
-			for (int wx=0; wx<mx; wx++)
-			for (int wy=0; wy<my; wy++) {
-				filterx.imag[wx+mx*wy] = rx*(wx-mx/2);
-				filtery.imag[wx+my*wy] = ry*(wy-my/2);
+			for (int y=0; y<ny; y++) {
+				gim.source.getX(0, y, t, row);
+				System.arraycopy(row, 0, pix, y*mx, nx);
 			}
-			log.progress("Fourier", t*100.0/gim.nt);
-
-			// generate the source signal
-			for (int x=0; x<gim.nx; x++)
-			for (int y=0; y<gim.ny; y++)
-				pix[x+y*mx] = gim.source.getPixel(x, y, t);
-			ComplexSignal sSource = new ComplexSignal(pix, mx, my);
-			ComplexSignal fSource = FFT2D.transform(sSource);
-			fSource.shift();
+			half = FFT2D.transformReal(pix, mx, my);
+			packed = new ComplexSignal(mx, my);
+		}
 
-			// derivate in x
-			filterx.multiply(fSource);
-			filterx.shift();
-			ComplexSignal is_x = FFT2D.inverse(filterx);
+		// The derivatives are the filters i*rx*u and i*ry*v of the signed 
+		// frequencies (u, v), with a null Nyquist frequency to keep them real.
+		// Both are packed in one complex spectrum gx + i*gy, the spectrum 
+		// of the right half is given by the Hermitian symmetry of the source.
+		double rx = Math.PI / mx;
+		double ry = Math.PI / my;
+		for (int v=0; v<my; v++) {
+			double cy = (v == my/2 ? 0.0 : ry * (v < my/2 ? v : v-my));
+			int vm = (v == 0 ? 0 : my-v);
+			for (int u=0, k=v*mx; u<mx; u++, k++) {
+				double cx = (u == mx/2 ? 0.0 : rx * (u < mx/2 ? u : u-mx));
+				int h = (u < hx ? u+v*hx : mx-u+vm*hx);
+				double a = (single ? fhalf.real[h] : half.real[h]);
+				double b = (single ? fhalf.imag[h] : half.imag[h]);
+				if (u >= hx)
+					b = -b;
+				if (single) {
+					fpacked.real[k] = (float)(-cx*b - cy*a);
+					fpacked.imag[k] = (float)(cx*a - cy*b);
+				}
+				else {
+					packed.real[k] = -cx*b - cy*a;
+					packed.imag[k] = cx*a - cy*b;
+				}
+			}
+		}
 
-			// derivate in y
-			filtery.multiply(fSource);
-			filtery.shift();
-			ComplexSignal is_y = FFT2D.inverse(filtery);
-			// create the gradient
-			for (int x=0; x<gim.nx; x++)
-			for (int y=0; y<gim.ny; y++) {
-				gim.gx.putPixel(x, y, t, is_x.real[y*mx+x]);
-				gim.gy.putPixel(x, y, t, is_y.real[y*mx+x]);
+		// create the gradient
+		if (single) {
+			ComplexSignalFloat gradient = FFT2D.inverse(fpacked);
+			for (int y=0; y<ny; y++) {
+				System.arraycopy(gradient.real, y*mx, frow, 0, nx);
+				gim.gx.putX(0, y, t, frow);
+				System.arraycopy(gradient.imag, y*mx, frow, 0, nx);
+				gim.gy.putX(0, y, t, frow);
+			}
+		}
+		else {
+			ComplexSignal gradient = FFT2D.inverse(packed);
+			for (int y=0; y<ny; y++) {
+				System.arraycopy(gradient.real, y*mx, row, 0, nx);
+				gim.gx.putX(0, y, t, row);
+				System.arraycopy(gradient.imag, y*mx, row, 0, nx);
+				gim.gy.putX(0, y, t, row);
 			}
 		}
 	}
 
-	private void gradientSpline(GroupImage gim, double sigmaLoG) {
+	/**
+	 * Cubic-spline gradient: the rows and the columns are prefiltered into
+	 * cubic-spline coefficients and the derivative is a 3-taps stencil on
+	 * the differences of the coefficients, run as a straight loop on the 
+	 * array of the row or of the column (vectorizable by the JIT compiler). 
+	 * The first and the last pixels are not written.
+	 */
+	private void gradientSpline(GroupImage gim, double sigmaLoG, int t) {
 		
 		int nx = gim.nx;
 		int ny = gim.ny;
 		int nt = gim.nt;
 		double rowin[]  = new double[nx];
 		double rowck[]  = new double[nx];
+		double rowou[]  = new double[nx-2];
 		
 		double colin[]  = new double[ny];
 		double colck[]  = new double[ny];
+		double colou[]  = new double[ny-2];
 		
 		double	c0 = 6.0;
 		double	a = Math.sqrt(3.0) - 2.0;
 		double sp[] = getQuadraticSpline(0.5);
-		double neighbor[] = new double[3];
-		double v = 0;
-		log.reset();
 		double w = 1000.0/(nt*(nx+ny));
 
-		for(int t=0; t<nt; t++) {
-			ImageWare logim = null;
-			if (sigmaLoG > 0) {
-				logim = LaplacianOfGaussian.run(gim.source, sigmaLoG, sigmaLoG);
-			}
-			else {
-				logim = gim.source.convert(ImageWare.FLOAT);
-			}
+		ImageWare logim = getSlice(gim, sigmaLoG, t);
+		float in[] = logim.getSliceFloat(0);
 			
-			for(int y=0; y<ny; y++) {
-				log.progress("Gradient", (t*(ny+nx)+y)*w);
-				logim.getX(0, y, t, rowin);
-				CubicSpline.doSymmetricalExponentialFilter(rowin, rowck, c0, a);
-				int x;
-				for(x=2; x<nx-1; x++) {
-					neighbor[0] = rowck[x-2] - rowck[x-1];
-					neighbor[1] = rowck[x-1] - rowck[x];
-					neighbor[2] = rowck[x] - rowck[x+1];
-					v = neighbor[0] * sp[0] + neighbor[1] * sp[1] + neighbor[2] * sp[2];
-					gim.gx.putPixel(x, y, t, v);
-				}
-				x = 1;
-				neighbor[0] = rowck[1] - rowck[x-1];
-				neighbor[1] = rowck[x-1] - rowck[x];
-				neighbor[2] = rowck[x] - rowck[x+1];
-				v = neighbor[0] * sp[0] + neighbor[1] * sp[1] + neighbor[2] * sp[2];
-				gim.gx.putPixel(x, y, t, v);
-			}
-			
-			for(int x=0; x<nx; x++) {
-				log.progress("Gradient", (t*(ny+nx)+x+ny)*w);
-				logim.getY(x, 0, t, colin);
-				CubicSpline.doSymmetricalExponentialFilter(colin, colck, c0, a);
-				int y;
-				for(y=2; y<ny-1; y++) {
-					neighbor[0] = colck[y-2] - colck[y-1];
-					neighbor[1] = colck[y-1] - colck[y];
-					neighbor[2] = colck[y] - colck[y+1];
-					v = neighbor[0] * sp[0] + neighbor[1] * sp[1] + neighbor[2] * sp[2];
-					gim.gy.putPixel(x, y, t, v);
-				}
-				y = 1;
-				neighbor[0] = colck[1] - colck[y-1];
-				neighbor[1] = colck[y-1] - colck[y];
-				neighbor[2] = colck[y] - colck[y+1];
-				v = neighbor[0] * sp[0] + neighbor[1] * sp[1] + neighbor[2] * sp[2];
-				gim.gy.putPixel(x, y, t, v);
-			}
+		for(int y=0; y<ny; y++) {
+			log.progress("Gradient", (t*(ny+nx)+y)*w);
+			for(int x=0, k=y*nx; x<nx; x++, k++)
+				rowin[x] = in[k];
+			CubicSpline.doSymmetricalExponentialFilter(rowin, rowck, c0, a);
+			stencil(rowck, rowou, sp);
+			gim.gx.putX(1, y, t, rowou);
+		}
+		
+		for(int x=0; x<nx; x++) {
+			log.progress("Gradient", (t*(ny+nx)+x+ny)*w);
+			for(int y=0, k=x; y<ny; y++, k+=nx)
+				colin[y] = in[k];
+			CubicSpline.doSymmetricalExponentialFilter(colin, colck, c0, a);
+			stencil(colck, colou, sp);
+			gim.gy.putY(x, 1, t, colou);
 		}
 	}
 
+	/**
+	 * Derivative of the quadratic spline on the differences of the cubic 
+	 * spline coefficients ck, for the positions 1 to n-2, stored in out[0] 
+	 * to out[n-3]. The position 1 is mirrored.
+	 */
+	private static void stencil(double ck[], double out[], double sp[]) {
+		int n = ck.length;
+		double sp0 = sp[0];
+		double sp1 = sp[1];
+		double sp2 = sp[2];
+		out[0] = (ck[1] - ck[0]) * sp0 + (ck[0] - ck[1]) * sp1 + (ck[1] - ck[2]) * sp2;
+		for(int i=2; i<n-1; i++)
+			out[i-1] = (ck[i-2] - ck[i-1]) * sp0 + (ck[i-1] - ck[i]) * sp1 + (ck[i] - ck[i+1]) * sp2;
+	}
+
 	/**
 	*/
 	private double[] getQuadraticSpline(double t) {
@@ -243,35 +356,30 @@ public class Gradient implements Runnable {
 		return v;
 	}
 	
-	private void gradientFiniteDifference(GroupImage gim, double sigmaLoG) {
+	/**
+	 * Central finite differences on the float slice, computed row by row as
+	 * straight loops (vectorizable by the JIT compiler). The float difference
+	 * is the rounding of the exact difference, as in double.
+	 */
+	private void gradientFiniteDifference(GroupImage gim, double sigmaLoG, int t) {
 		int nx = gim.nx;
 		int ny = gim.ny;
-		int nt = gim.nt;
-		double rowin[] = new double[nx];
-		double rowou[] = new double[nx];
-		double colin[] = new double[ny];
-		double colou[] = new double[ny];
-		for(int t=0; t<nt; t++) {
-			ImageWare log = null; 
-			if (sigmaLoG > 0) {
-				log = LaplacianOfGaussian.run(gim.source, sigmaLoG, sigmaLoG);
-			}
-			else {
-				log = gim.source.convert(ImageWare.FLOAT);
-			}
-			for(int y=0; y<ny; y++) {
-				log.getX(0, y, t, rowin);
-				for(int x=1; x<nx-1; x++)
-					rowou[x] = rowin[x-1] -  rowin[x+1];
-				gim.gx.putX(0, y, t, rowou);
-			}
-			for(int x=0; x<nx; x++) {
-				log.getY(x, 0, t, colin);
-				for(int y=1; y<ny-1; y++)
-					colou[y] = -colin[y+1] +  colin[y-1];
-				gim.gy.putY(x, 0, t, colou);
-			}
+		ImageWare log = getSlice(gim, sigmaLoG, t);
+		float in[] = log.getSliceFloat(0);
+		float rowou[] = new float[nx];
+		for(int y=0; y<ny; y++) {
+			for(int x=1, k=y*nx+1; x<nx-1; x++, k++)
+				rowou[x] = in[k-1] - in[k+1];
+			gim.gx.putX(0, y, t, rowou);
+		}
+		float zero[] = new float[nx];
+		gim.gy.putX(0, 0, t, zero);
+		for(int y=1; y<ny-1; y++) {
+			for(int x=0, k=y*nx; x<nx; x++, k++)
+				rowou[x] = in[k-nx] - in[k+nx];
+			gim.gy.putX(0, y, t, rowou);
 		}
+		gim.gy.putX(0, ny-1, t, zero);
 	}
 
 }
@@ -29,14 +29,20 @@
 
 package orientation;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Vector;
 
 import ij.IJ;
 import ij.ImagePlus;
+import ij.VirtualStack;
 import ij.WindowManager;
+import ij.process.FloatProcessor;
 import ij.process.ImageProcessor;
+import orientation.filters.Hessian;
 import orientation.imageware.Builder;
 import orientation.imageware.ImageWare;
+import orientation.imageware.MappedFloatSet;
 
 public class GroupImage {
 
@@ -74,6 +80,12 @@ public class GroupImage {
 	
 	private LogAbstract log;
 	
+	// Copy of the parameters of the run, used to compute the maps on demand
+	private OrientationParameters params;
+
+	// Time and memory of the stages of the run which computed the maps
+	private ProcessMetrics metrics = new ProcessMetrics();
+	
 	public GroupImage(LogAbstract log, ImageProcessor ip, OrientationParameters params) {
 		this.log = log;
 		this.source = Builder.create(new ImagePlus("", ip));
@@ -104,12 +116,23 @@ public class GroupImage {
 	}
 	
 	private void create( OrientationParameters params) {
+		this.params = params.duplicate();
+		// The memory-mapped stacks are only accessed slice by slice, the maps
+		// are written row by row by insert(): getSliceFloat() is not available
+		// on a memory-mapped map, the tensor can not write into it
+		if (source instanceof MappedFloatSet || !params.mapped.equals(""))
+			this.params.streaming = true;
 		nx = source.getWidth();
 		ny = source.getHeight();
 		nt = source.getSizeZ();
-		long kb = (nx*ny*nt*4) / 1024;
+		long kb = ((long) nx*ny*nt*4) / 1024;
 		log.progress("Alloction", 10);
-		if (params.gradient == OrientationParameters.HESSIAN) {
+		// In streaming mode, the gradient is computed slice by slice in a 
+		// scratch GroupImage, its volume is only retained if it is requested
+		boolean gradients = !this.params.streaming 
+				|| params.isFeatureRequested(OrientationParameters.GRADIENT_HORIZONTAL) 
+				|| params.isFeatureRequested(OrientationParameters.GRADIENT_VERTICAL);
+		if (gradients && params.gradient == OrientationParameters.HESSIAN) {
 			hxx = allocate("Hessian Horizontal", kb);
 			log.progress("Alloc HXX", 30);
 			hyy = allocate("Hessian Vertical", kb);
@@ -117,21 +140,28 @@ public class GroupImage {
 			hxy = allocate("Hessian Cross Term", kb);
 			log.progress("Alloc HXY", 60);
 		}
-		else {
+		else if (gradients) {
 			gx = allocate("Gradient Horizontal", kb);
 			log.progress("Alloc GX", 40);
 			gy = allocate("Gradient Vertical", kb);
 			log.progress("Alloc GY", 60);
 		}
-		energy	= allocate("Tensor Energy", kb);
+		// Only the requested features are allocated, the others are computed
+		// on demand by getFeature()
+		if (params.isFeatureRequested(OrientationParameters.TENSOR_ENERGY))
+			energy = allocate("Tensor Energy", kb);
 		log.progress("Alloc E", 70);
-		coherency 	= allocate("Coherency", kb);
-		directionality = allocate("Directionality", kb);
-		fa = allocate("Anisotropy FA", kb);
+		if (params.isFeatureRequested(OrientationParameters.TENSOR_COHERENCY))
+			coherency = allocate("Coherency", kb);
+		if (params.isFeatureRequested(OrientationParameters.TENSOR_DIRECTIONALITY))
+			directionality = allocate("Directionality", kb);
+		if (params.isFeatureRequested(OrientationParameters.TENSOR_FA))
+			fa = allocate("Anisotropy FA", kb);
 		log.progress("Alloc Coh", 80);
-		orientation = allocate("Orientation", kb);
+		if (params.isFeatureRequested(OrientationParameters.TENSOR_ORIENTATION))
+			orientation = allocate("Orientation", kb);
 		
-		if (params.isServiceHarris()) 
+		if (params.isFeatureRequested(OrientationParameters.HARRIS))
 			harris = allocate("Harris Index", kb);
 		
 		if (params.isServiceDistribution()) {
@@ -142,7 +172,181 @@ public class GroupImage {
 	}
 	
 	private ImageWare allocate(String title, long kb) {
-		return Builder.create(nx, ny, nt, ImageWare.FLOAT);
+		if (params.mapped.equals(""))
+			return Builder.create(nx, ny, nt, ImageWare.FLOAT);
+		File file = new File(params.mapped, title + ".raw");
+		try {
+			return Builder.createMapped(file, nx, ny, nt);
+		}
+		catch (IOException e) {
+			throw new RuntimeException("Unable to create the memory-mapped file " + file + ": " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Returns true if the slices are computed one by one in a scratch
+	 * GroupImage, see OrientationParameters.streaming.
+	 */
+	public boolean isStreaming() {
+		return params.streaming;
+	}
+
+	/**
+	 * Flushes and closes the memory-mapped maps, see OrientationParameters.mapped.
+	 * The source is not closed.
+	 */
+	public void close() throws IOException {
+		ImageWare maps[] = { gx, gy, hxx, hyy, hxy, energy, orientation, coherency, directionality, fa, harris, 
+				selectedDistributionMask, selectedDistributionOrientation };
+		IOException error = null;
+		for (ImageWare map : maps) {
+			if (map instanceof MappedFloatSet) {
+				try {
+					((MappedFloatSet) map).close();
+				}
+				catch (IOException e) {
+					if (error == null)
+						error = e;
+				}
+			}
+		}
+		if (error != null)
+			throw error;
+	}
+
+	public ProcessMetrics getMetrics() {
+		return metrics;
+	}
+
+	public void setMetrics(ProcessMetrics metrics) {
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Returns the map of a feature of the structure tensor (energy, orientation, 
+	 * coherency, directionality, FA or Harris index). If it was not requested 
+	 * by the run, the map is allocated and computed from the gradient for all the
+	 * slices, with the parameters of the run. Returns null if the feature is
+	 * not available.
+	 */
+	public synchronized ImageWare getFeature(int feature) {
+		ImageWare map = getMap(feature);
+		if (map != null || !isComputable(feature))
+			return map;
+		map = allocate(OrientationParameters.name[feature], ((long) nx*ny*nt*4) / 1024);
+		setMap(feature, map);
+		if (!params.streaming) {
+			StructureTensor tensor = new StructureTensor(log, this, params, feature);
+			for (int t = 0; t < nt; t++)
+				tensor.run(t);
+		}
+		else {
+			// Streaming, the gradient is computed again slice by slice
+			for (int t = 0; t < nt; t++) {
+				GroupImage part = crop(t, 0, 0, nx, ny);
+				if (params.gradient == OrientationParameters.HESSIAN)
+					new Hessian(part.log, part, params).run(0);
+				else
+					new Gradient(part.log, part, params).run(0);
+				insert(part.getFeature(feature), map, 0, t, nx, 0, 0, 0, 0, nx, ny);
+			}
+		}
+		if (feature == OrientationParameters.HARRIS)
+			minmaxHarris = harris.getMinMax();
+		return map;
+	}
+	
+	/**
+	 * Returns true if the map of the feature is already computed or could be
+	 * computed on demand by getFeature().
+	 */
+	public boolean hasFeature(int feature) {
+		return getMap(feature) != null || isComputable(feature);
+	}
+	
+	private boolean isComputable(int feature) {
+		switch (feature) {
+		case OrientationParameters.TENSOR_ENERGY:
+		case OrientationParameters.TENSOR_ORIENTATION:
+		case OrientationParameters.TENSOR_COHERENCY:
+		case OrientationParameters.TENSOR_DIRECTIONALITY:
+		case OrientationParameters.TENSOR_FA:
+			return true;
+		case OrientationParameters.HARRIS:
+			return params.gradient != OrientationParameters.HESSIAN;
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns a GroupImage built on a copy of the rectangle (x, y, w, h) of 
+	 * the slice t of the source, with its own gradient maps and the same 
+	 * requested features. Used to process a slice or a tile on its own.
+	 */
+	public GroupImage crop(int t, int x, int y, int w, int h) {
+		ImageWare part = Builder.create(w, h, 1, ImageWare.FLOAT);
+		source.getXY(x, y, t, part);
+		OrientationParameters p = params.duplicate();
+		p.streaming = false;
+		p.mapped = "";
+		return new GroupImage(new LogMute(), part, p);
+	}
+	
+	private ImageWare getMap(int feature) {
+		switch (feature) {
+		case OrientationParameters.GRADIENT_HORIZONTAL: return (hxx != null ? hxx : gx);
+		case OrientationParameters.GRADIENT_VERTICAL: return (hyy != null ? hyy : gy);
+		case OrientationParameters.TENSOR_ENERGY: return energy;
+		case OrientationParameters.TENSOR_ORIENTATION: return orientation;
+		case OrientationParameters.TENSOR_COHERENCY: return coherency;
+		case OrientationParameters.TENSOR_DIRECTIONALITY: return directionality;
+		case OrientationParameters.TENSOR_FA: return fa;
+		case OrientationParameters.HARRIS: return harris;
+		case OrientationParameters.DIST_MASK: return selectedDistributionMask;
+		case OrientationParameters.DIST_ORIENTATION: return selectedDistributionOrientation;
+		}
+		return null;
+	}
+	
+	private void setMap(int feature, ImageWare map) {
+		switch (feature) {
+		case OrientationParameters.TENSOR_ENERGY: energy = map; break;
+		case OrientationParameters.TENSOR_ORIENTATION: orientation = map; break;
+		case OrientationParameters.TENSOR_COHERENCY: coherency = map; break;
+		case OrientationParameters.TENSOR_DIRECTIONALITY: directionality = map; break;
+		case OrientationParameters.TENSOR_FA: fa = map; break;
+		case OrientationParameters.HARRIS: harris = map; break;
+		}
+	}
+	
+	/**
+	 * Copies a rectangle (w, h) of all the maps of a smaller GroupImage, taken
+	 * at the position (px, py) of its slice pt, into the slice t of this 
+	 * GroupImage at the position (x, y). Used to stitch the tiles.
+	 */
+	public void insert(GroupImage part, int pt, int t, int px, int py, int x, int y, int w, int h) {
+		insert(part.gx, gx, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.gy, gy, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.hxx, hxx, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.hyy, hyy, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.hxy, hxy, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.energy, energy, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.coherency, coherency, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.directionality, directionality, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.fa, fa, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.orientation, orientation, pt, t, part.nx, px, py, x, y, w, h);
+		insert(part.harris, harris, pt, t, part.nx, px, py, x, y, w, h);
+	}
+	
+	private void insert(ImageWare in, ImageWare out, int pt, int t, int pnx, int px, int py, int x, int y, int w, int h) {
+		if (in == null || out == null)
+			return;
+		float src[] = in.getSliceFloat(pt);
+		float row[] = new float[w];
+		for (int j = 0; j < h; j++) {
+			System.arraycopy(src, (py + j) * pnx + px, row, 0, w);
+			out.putX(x, y + j, t, row);
+		}
 	}
 	
 	public ImagePlus showFeature(int feature, int countRun, boolean degrees, OrientationParameters params) {
@@ -153,48 +357,8 @@ public class GroupImage {
 	}
 	
 	public ImagePlus createImageFeature(int feature, int countRun, boolean degrees, OrientationParameters params) {
-		int scalability = 0;
-		ImageWare image = null;
-		if (feature == OrientationParameters.GRADIENT_HORIZONTAL) {
-			image = (hxx != null ? hxx : gx);
-			scalability = SCALABLE;
-		}
-		else if (feature == OrientationParameters.GRADIENT_VERTICAL) {
-			image = (hyy != null ? hyy : gy);
-			scalability = SCALABLE;
-		}
-		else if (feature == OrientationParameters.TENSOR_ORIENTATION) {
-			image = orientation;
-			scalability = SCALABLE_RANGE_PI;
-		}
-		else if (feature == OrientationParameters.TENSOR_COHERENCY) {
-			image = coherency;
-			scalability = SCALABLE_NO;
-		}
-		else if (feature == OrientationParameters.TENSOR_DIRECTIONALITY) {
-			image = directionality;
-			scalability = params.scaleDirectionality ? SCALABLE : SCALABLE_NO;
-		}
-		else if (feature == OrientationParameters.TENSOR_FA) {
-			image = fa;
-			scalability = SCALABLE_NO;
-		}
-		else if (feature == OrientationParameters.TENSOR_ENERGY) {
-			image = energy;
-			scalability = params.scaleEnergy ? SCALABLE : SCALABLE_NO;
-		}
-		else if (feature == OrientationParameters.HARRIS) {
-			image = harris;
-			scalability = SCALABLE_NO;
-		}
-		else if (feature == OrientationParameters.DIST_MASK) {
-			image = selectedDistributionMask;
-			scalability = SCALABLE_NO;
-		}
-		else if (feature == OrientationParameters.DIST_ORIENTATION) {
-			image = selectedDistributionOrientation;
-			scalability = SCALABLE_RANGE_PI;
-		}
+		int scalability = getScalability(feature, params);
+		ImageWare image = getFeature(feature);
 				
 		if (image != null) {
 			String title = OrientationParameters.name[feature];
@@ -217,6 +381,65 @@ public class GroupImage {
 		return null;
 	}
 	
+	/**
+	 * Returns the map of a feature as an image on a virtual stack, rescaled as
+	 * by createImageFeature(). The slices are read from the map and rescaled 
+	 * one at a time when they are accessed, used to export the memory-mapped 
+	 * maps. Returns null if the feature is not a map.
+	 */
+	public ImagePlus createVirtualFeature(int feature, int countRun, final boolean degrees, OrientationParameters params) {
+		final ImageWare image = getFeature(feature);
+		if (image == null)
+			return null;
+		final int scalability = getScalability(feature, params);
+		final double minmax[] = (scalability == SCALABLE ? image.getMinMax() : null);
+		VirtualStack stack = new VirtualStack(nx, ny, null, null) {
+			@Override
+			public int getSize() {
+				return nt;
+			}
+			
+			@Override
+			public String getSliceLabel(int n) {
+				return "" + (n-1);
+			}
+			
+			@Override
+			public ImageProcessor getProcessor(int n) {
+				ImageWare slice = Builder.create(nx, ny, 1, ImageWare.FLOAT);
+				image.getXY(0, 0, n-1, slice);
+				rescaleMono(slice, scalability, degrees, minmax);
+				return new FloatProcessor(nx, ny, slice.getSliceFloat(0), null);
+			}
+		};
+		return new ImagePlus(OrientationParameters.name[feature] + "-" + countRun, stack);
+	}
+	
+	private int getScalability(int feature, OrientationParameters params) {
+		int scalability = 0;
+		if (feature == OrientationParameters.GRADIENT_HORIZONTAL)
+			scalability = SCALABLE;
+		else if (feature == OrientationParameters.GRADIENT_VERTICAL)
+			scalability = SCALABLE;
+		else if (feature == OrientationParameters.TENSOR_ORIENTATION)
+			scalability = SCALABLE_RANGE_PI;
+		else if (feature == OrientationParameters.TENSOR_COHERENCY)
+			scalability = SCALABLE_NO;
+		else if (feature == OrientationParameters.TENSOR_DIRECTIONALITY)
+			scalability = params.scaleDirectionality ? SCALABLE : SCALABLE_NO;
+		else if (feature == OrientationParameters.TENSOR_FA)
+			scalability = SCALABLE_NO;
+		else if (feature == OrientationParameters.TENSOR_ENERGY)
+			scalability = params.scaleEnergy ? SCALABLE : SCALABLE_NO;
+		else if (feature == OrientationParameters.HARRIS)
+			scalability = SCALABLE_NO;
+		else if (feature == OrientationParameters.DIST_MASK)
+			scalability = SCALABLE_NO;
+		else if (feature == OrientationParameters.DIST_ORIENTATION)
+			scalability = SCALABLE_RANGE_PI;
+		return scalability;
+	}
+	
 	public void hideFeature(String title, Vector<ImagePlus> listImage, int countRun) {			
 		Vector<ImagePlus> updatedList = new Vector<ImagePlus>();
 		for(int i=0; i<listImage.size(); i++) {
@@ -286,6 +509,27 @@ public class GroupImage {
 		}
 	}
 		
+	/**
+	 * Rescales a slice of a stack as rescaleMono() rescales the stack, with 
+	 * the minimum and the maximum of the stack.
+	 */
+	private void rescaleMono(ImageWare slice, int scalability, boolean degrees, double minmax[]) {
+		if (scalability != SCALABLE) {
+			rescaleMono(slice, scalability, degrees);
+			return;
+		}
+		// Same as FloatPointwise.rescale(0, 1) on the whole stack
+		double a = 1.0;
+		double min = 0.5;
+		if (minmax[0] - minmax[1] != 0) {
+			a = 1.0 / (minmax[1] - minmax[0]);
+			min = minmax[0];
+		}
+		float pixels[] = slice.getSliceFloat(0);
+		for (int k = 0; k < pixels.length; k++)
+			pixels[k] = (float) (a * (((double) (pixels[k])) - min));
+	}
+		
 	public ImageWare selectChannel(String name, OrientationParameters params) {
 
 		if (name.equals("Gradient-X") && gx != null) {
@@ -294,20 +538,20 @@ public class GroupImage {
 		else if (name.equals("Gradient-Y") && gy != null) {
 			return prepare(gy, SCALABLE, false, true);
 		}
-		else if (name.equals("Orientation") && orientation != null) {
-			return prepare(orientation, SCALABLE_RANGE_PI, false, true);
+		else if (name.equals("Orientation") && hasFeature(OrientationParameters.TENSOR_ORIENTATION)) {
+			return prepare(getFeature(OrientationParameters.TENSOR_ORIENTATION), SCALABLE_RANGE_PI, false, true);
 		}
-		else if (name.equals("Coherency") && coherency != null) {
-			return prepare(coherency, SCALABLE_NO, false, true);
+		else if (name.equals("Coherency") && hasFeature(OrientationParameters.TENSOR_COHERENCY)) {
+			return prepare(getFeature(OrientationParameters.TENSOR_COHERENCY), SCALABLE_NO, false, true);
 		}
-		else if (name.equals("Directionality") && directionality != null) {
-			return prepare(directionality, params.scaleDirectionality ? SCALABLE : SCALABLE_NO, false, true);
+		else if (name.equals("Directionality") && hasFeature(OrientationParameters.TENSOR_DIRECTIONALITY)) {
+			return prepare(getFeature(OrientationParameters.TENSOR_DIRECTIONALITY), params.scaleDirectionality ? SCALABLE : SCALABLE_NO, false, true);
 		}
-		else if (name.equals("Anisotropy-FA") && fa != null) {
-			return prepare(fa, SCALABLE_NO, false, true);
+		else if (name.equals("Anisotropy-FA") && hasFeature(OrientationParameters.TENSOR_FA)) {
+			return prepare(getFeature(OrientationParameters.TENSOR_FA), SCALABLE_NO, false, true);
 		}
-		else if (name.equals("Energy") && energy != null) {
-			return prepare(energy, params.scaleEnergy ? SCALABLE : SCALABLE_NO, false, true);
+		else if (name.equals("Energy") && hasFeature(OrientationParameters.TENSOR_ENERGY)) {
+			return prepare(getFeature(OrientationParameters.TENSOR_ENERGY), params.scaleEnergy ? SCALABLE : SCALABLE_NO, false, true);
 		}
 		else if (name.equals("Constant")) {
 			ImageWare max = Builder.create(nx, ny, nt, ImageWare.FLOAT);
@@ -32,7 +32,7 @@ package orientation;
 import gui_orientation.components.Settings;
 import ij.Macro;
 
-public class OrientationParameters {
+public class OrientationParameters implements Cloneable {
 
 	final public static int		MODE_ANALYSIS			= 0;
 	final public static int		MODE_HARRIS				= 1;
@@ -70,6 +70,37 @@ public class OrientationParameters {
 	public double				epsilon					= 0.001;
 	public boolean				radian					= true;
 
+	// Number of worker threads, 0 for all the available processors
+	public int					threads					= 0;
+
+	// Size of the tiles to split the large slices, 0 to never split
+	public int					tile						= 1024;
+
+	// Streaming, the gradient is computed slice by slice and not retained
+	public boolean				streaming				= false;
+
+	// Directory of the memory-mapped feature maps, empty to keep them in memory
+	public String				mapped					= "";
+
+	// Show the table of the metrics of the run, time and memory per stage
+	public boolean				metrics					= false;
+
+	// Float precision, the gradient and the tensor components are kept in 
+	// float, double is only used for the state of the recursive filters.
+	// The spectra of the Fourier and Riesz gradients are also kept in float.
+	// On the test images, the features differ from the double precision by
+	// less than 3e-7 (relative to the range) and the orientation by less 
+	// than 1e-4 rad; the Hessian features by less than 5e-3
+	public boolean				floatPrecision			= false;
+
+	// Scales of the multi-scale structure tensor, values of sigmaST, empty 
+	// for a single scale
+	public double				scales[]					= new double[0];
+
+	// Criterion of the selection of the scale per pixel among the scales: 
+	// none (all the scales are kept), coherency or energy
+	public String				scaleSelection			= "none";
+
 	public double				minCoherency				= 0;
 	public double				minEnergy				= 0;
 
@@ -160,6 +191,43 @@ public class OrientationParameters {
 		return service == OrientationService.HARRIS;
 	}
 
+	/**
+	 * Returns true if the map of the feature is needed by the requested views
+	 * or by the service. The other maps are only computed on demand, see
+	 * GroupImage.getFeature().
+	 */
+	public boolean isFeatureRequested(int feature) {
+		if (feature == HARRIS)
+			return isServiceHarris();
+		if (feature == DIST_MASK || feature == DIST_ORIENTATION)
+			return isServiceDistribution();
+		if (feature == TENSOR_ENERGY || feature == TENSOR_ORIENTATION || feature == TENSOR_COHERENCY)
+			if (isServiceDistribution() || isServiceVectorField())
+				return true;
+		if (feature == TENSOR_ORIENTATION && isServiceClustering())
+			return true;
+		if (view[feature])
+			return true;
+		if (view[SURVEY] && !isServiceHarris() && !isServiceClustering() && !isServiceVectorField() && !isServiceDistribution())
+			return name[feature].equals(featureHue) || name[feature].equals(featureSat) || name[feature].equals(featureBri);
+		return false;
+	}
+
+	/**
+	 * Returns a copy of the parameters, the views included.
+	 */
+	public OrientationParameters duplicate() {
+		try {
+			OrientationParameters copy = (OrientationParameters) clone();
+			copy.view = view.clone();
+			copy.scales = scales.clone();
+			return copy;
+		}
+		catch (CloneNotSupportedException e) {
+			throw new InternalError(e.getMessage());
+		}
+	}
+
 	public void load(Settings settings) {
 		epsilon = settings.loadValue("epsilon", epsilon);
 		radian = settings.loadValue("radian", true);
@@ -205,6 +273,18 @@ public class OrientationParameters {
 	public void getMacroParameters(String options) {
 		sigmaST = Double.parseDouble(Macro.getValue(options, "tensor", "1"));
 		gradient = Integer.parseInt(Macro.getValue(options, "gradient", "0"));
+		threads = Integer.parseInt(Macro.getValue(options, "threads", "0"));
+		tile = Integer.parseInt(Macro.getValue(options, "tile", "1024"));
+		streaming = Macro.getValue(options, "streaming", "off").equals("on");
+		mapped = Macro.getValue(options, "mapped", "");
+		metrics = Macro.getValue(options, "metrics", "off").equals("on");
+		floatPrecision = Macro.getValue(options, "float-precision", "off").equals("on");
+		String list = Macro.getValue(options, "scales", "").trim();
+		String items[] = (list.equals("") ? new String[0] : list.split(","));
+		scales = new double[items.length];
+		for (int i = 0; i < items.length; i++)
+			scales[i] = Double.parseDouble(items[i].trim());
+		scaleSelection = Macro.getValue(options, "scale-selection", "none");
 		radian = Macro.getValue(options, "radian", "on").equals("on");
 		hsb = Macro.getValue(options, "hsb", "on").equals("on");
 		scaleEnergy = Macro.getValue(options, "scale-energy", "on").equals("on");
@@ -29,8 +29,7 @@
 
 package orientation;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import orientation.filters.Hessian;
 import orientation.imageware.ImageWare;
@@ -41,6 +40,7 @@ public class OrientationProcess extends Thread {
 	private OrientationParameters	params;
 	private LogAbstract				log;
 	private ImageWare				source;
+	private ProcessMetrics			metrics	= new ProcessMetrics();
 
 	public OrientationProcess(LogAbstract log, ImageWare source, OrientationParameters params) {
 		this.log = log;
@@ -52,25 +52,109 @@ public class OrientationProcess extends Thread {
 		return gim;
 	}
 
+	/**
+	 * Returns the time and the memory used by the stages of the run.
+	 */
+	public ProcessMetrics getMetrics() {
+		return metrics;
+	}
+
 	@Override
 	public void run() {
 		log.reset();
+		ProcessMetrics.Probe run = metrics.begin(ProcessMetrics.RUN, -1);
 
+		ProcessMetrics.Probe allocation = metrics.begin(ProcessMetrics.ALLOCATION, -1);
 		gim = new GroupImage(log, source, params);
+		gim.setMetrics(metrics);
+		metrics.end(allocation);
+		WorkerPool.setParallelism(params.threads);
 
-		if (params.gradient == OrientationParameters.HESSIAN)
-			new Hessian(log, gim, params).run();
-		else
-			new Gradient(log, gim, params).run();
-
-		StructureTensor st = new StructureTensor(log, gim, params);
-		ExecutorService executor = Executors.newFixedThreadPool(1);
-		executor.execute(st);
-		executor.shutdown();
-		while (!executor.isTerminated()) {
+		Gradient.acquireCache();
+		try {
+			if (TileScheduler.isTiled(gim, params)) {
+				TileScheduler tiles = new TileScheduler(log, gim, params);
+				for (int t = 0; t < gim.nt; t++)
+					tiles.run(t);
+			}
+			else if (gim.nt == 1 || WorkerPool.getParallelism() == 1) {
+				for (int t = 0; t < gim.nt; t++)
+					runSlice(t, log);
+			}
+			else {
+				runSlicesParallel();
+			}
 		}
+		finally {
+			Gradient.releaseCache();
+		}
+
+		if (params.isServiceHarris())
+			gim.minmaxHarris = gim.harris.getMinMax();
+		metrics.end(run);
 		log.finish();
 	}
 
+	/**
+	 * Computes the gradient and the structure tensor of all the slices, 
+	 * distributed over the shared worker pool. 
+	 * 
+	 * Every slice is written at its own position in the GroupImage, the result
+	 * does not depend on the order of execution. The progress is reported
+	 * slice by slice.
+	 */
+	private void runSlicesParallel() {
+		final int nt = gim.nt;
+		final LogAbstract mute = new LogMute();
+		final AtomicInteger done = new AtomicInteger(0);
+		final Runnable tasks[] = new Runnable[nt];
+		for (int t = 0; t < nt; t++) {
+			final int slice = t;
+			tasks[t] = new Runnable() {
+				@Override
+				public void run() {
+					runSlice(slice, mute);
+					int n = done.incrementAndGet();
+					synchronized (log) {
+						log.progress("Slice " + n + "/" + nt, n * 100.0 / nt);
+					}
+				}
+			};
+		}
+		WorkerPool.invokeAll(tasks);
+	}
+
+	/**
+	 * Computes the gradient, the structure tensor and its features of the slice t.
+	 * In streaming mode, the slice is computed in a scratch GroupImage and 
+	 * only the retained maps are copied back.
+	 */
+	private void runSlice(int t, LogAbstract log) {
+		if (gim.isStreaming()) {
+			GroupImage part = gim.crop(t, 0, 0, gim.nx, gim.ny);
+			compute(log, part, params, 0, metrics, t);
+			gim.insert(part, 0, t, 0, 0, 0, 0, gim.nx, gim.ny);
+		}
+		else {
+			compute(log, gim, params, t, metrics, t);
+		}
+	}
+
+	/**
+	 * Computes the gradient, the structure tensor and its features of the 
+	 * slice t of a GroupImage. The stages are recorded in the metrics as 
+	 * stages of the slice of the stack.
+	 */
+	static void compute(LogAbstract log, GroupImage gim, OrientationParameters params, int t, ProcessMetrics metrics, int slice) {
+		ProcessMetrics.Probe gradient = metrics.begin(ProcessMetrics.GRADIENT, slice);
+		if (params.gradient == OrientationParameters.HESSIAN)
+			new Hessian(log, gim, params).run(t);
+		else
+			new Gradient(log, gim, params).run(t);
+		metrics.end(gradient);
+		StructureTensor tensor = new StructureTensor(log, gim, params);
+		tensor.setMetrics(metrics, slice);
+		tensor.run(t);
+	}
 
 }
@@ -71,6 +71,7 @@ public class OrientationResults {
 	}
 	
 	public static void show(boolean view[], GroupImage gim, OrientationParameters params, int countRun) {
+		ProcessMetrics.Probe display = gim.getMetrics().begin(ProcessMetrics.DISPLAY, -1);
 		int feature;
 
 		feature = OrientationParameters.GRADIENT_HORIZONTAL;
@@ -136,6 +137,10 @@ public class OrientationResults {
 			if (view[OrientationParameters.DIST_HISTO_TABLE]) 
 				tableDistribution(gim, params, countRun);	
 		}
+
+		gim.getMetrics().end(display);
+		if (params.metrics)
+			gim.getMetrics().createTable().show(prefix + "Metrics-" + countRun);
 	}
 	
 	public static void display(int feature, GroupImage gim, OrientationParameters params, int countRun) {
@@ -176,7 +181,14 @@ public class OrientationResults {
 	}
 
 	public static void tableDistribution(GroupImage gim, OrientationParameters params, int countRun) {
-		float histo[][] = distribution(gim, params);
+		ResultsTable table = createTableDistribution(distribution(gim, params));
+		table.show(prefix + "Distribution-" + countRun);
+	}
+	
+	/**
+	 * Creates the table of the histograms of orientation, one column per slice.
+	 */
+	public static ResultsTable createTableDistribution(float histo[][]) {
 		int nt = histo.length;
 		ResultsTable table = new ResultsTable();
 		float angles[] = new float[180];
@@ -189,7 +201,7 @@ public class OrientationResults {
 			for (int t = 0; t<nt; t++)
 				table.addValue("Slice" + (t+1), histo[t][a]);
 		}
-		table.show(prefix + "Distribution-" + countRun);
+		return table;
 	}
 	
 	public static void plotDistribution(GroupImage gim, OrientationParameters params, int countRun) {
@@ -240,10 +252,31 @@ public class OrientationResults {
 		if (gim == null)
 			return;
 		int L = params.harrisL;
-		double min = Math.min(1, Math.max(0, params.harrisMin * 0.01));
 		if (L <= 0)
 			L = 0;
 
+		ArrayList<Corner> corners = detectCorners(gim, params);
+		
+		if (params.showHarrisTable)
+			createTableCorners(corners).show("OJ-Table-Corners Harris-");
+
+		Overlay overlay = new Overlay();
+		if (params.showHarrisOverlay) {
+			for (Corner pt : corners) {
+				Roi roi = new OvalRoi(pt.x-L/2, pt.y-L/2, L, L);
+				roi.setPosition(pt.t);
+				overlay.add(roi);
+			}
+	 	}
+		gim.getImagePlus().setOverlay(overlay);
+	}
+
+	/**
+	 * Detects the local maxima of the Harris index and returns the strongest
+	 * ones, the fraction params.harrisMin (in percent) of them.
+	 */
+	public static ArrayList<Corner> detectCorners(GroupImage gim, OrientationParameters params) {
+		double min = Math.min(1, Math.max(0, params.harrisMin * 0.01));
 		ArrayList<Corner> corners = new ArrayList<Corner>();
 		double v;
 		for (int t = 0; t < gim.nt; t++) {
@@ -261,30 +294,23 @@ public class OrientationResults {
 				}
 		}
 		Collections.sort(corners);
-		
-		if (params.showHarrisTable) {
-			ResultsTable table = new ResultsTable();
-			for (int i = 0; i < corners.size()*min; i++) {
-				Corner pt = (Corner) corners.get(i);
-				table.incrementCounter();
-				table.addValue("X", pt.x);
-				table.addValue("Y", pt.y);
-				table.addValue("Slice", pt.t);
-				table.addValue("Harris Index", pt.getHarrisIndex());
-			}
-			table.show("OJ-Table-Corners Harris-");
-		}
+		int n = (int)Math.ceil(corners.size()*min);
+		return new ArrayList<Corner>(corners.subList(0, Math.min(n, corners.size())));
+	}
 
-		Overlay overlay = new Overlay();
-		if (params.showHarrisOverlay) {
-			for (int i = 0; i < corners.size()*min; i++) {
-				Corner pt = (Corner) corners.get(i);
-				Roi roi = new OvalRoi(pt.x-L/2, pt.y-L/2, L, L);
-				roi.setPosition(pt.t);
-				overlay.add(roi);
-			}
-	 	}
-		gim.getImagePlus().setOverlay(overlay);
+	/**
+	 * Creates the table of the Harris corners.
+	 */
+	public static ResultsTable createTableCorners(ArrayList<Corner> corners) {
+		ResultsTable table = new ResultsTable();
+		for (Corner pt : corners) {
+			table.incrementCounter();
+			table.addValue("X", pt.x);
+			table.addValue("Y", pt.y);
+			table.addValue("Slice", pt.t);
+			table.addValue("Harris Index", pt.getHarrisIndex());
+		}
+		return table;
 	}
 
 	/*
@@ -301,13 +327,53 @@ public class OrientationResults {
 		int type = params.vectorType;
 		double scale = params.vectorScale;
 		
+		Clusters[] clusters = computeVectorField(gim, params);
+		if (clusters == null)
+			return;
+		int nt = clusters.length;
+		
+		if (params.showVectorTable)
+			createTableVectorField(clusters, size).show("OJ-Table-Vector-Field-");
+		
+		Overlay overlay = new Overlay();
+		if (params.showVectorOverlay) {
+			double r = scale / 100.0 * size * 0.5;
+			for (int t = 0; t < nt; t++)
+			for (Cluster c : clusters[t]) {
+				double a = r;
+				if (type == 1)
+					a = r * c.energy;
+				else if (type == 2)
+					a = r * c.coherency;
+				else if (type == 3)
+					a = r * c.energy * c.coherency;
+
+				int x1 = (int) Math.round(c.x + size / 2 + a * c.dx);
+				int y1 = (int) Math.round(c.y + size / 2 - a * c.dy);
+				int x2 = (int) Math.round(c.x + size / 2 - a * c.dx);
+				int y2 = (int) Math.round(c.y + size / 2 + a * c.dy);
+				Roi roi = new Line(x1, y1, x2, y2);
+				roi.setPosition(t + 1);
+				//Roi.setColor(new Color(200, 0, (int)(200*Math.random()), 100));
+				overlay.add(roi);
+			}
+		}
+		gim.getImagePlus().setOverlay(overlay);
+	}
+
+	/**
+	 * Computes the vectors of the vector field, one vector per block of 
+	 * params.vectorGrid pixels, per slice. Returns null if the energy is null.
+	 */
+	public static Clusters[] computeVectorField(GroupImage gim, OrientationParameters params) {
+		int size = params.vectorGrid;
 		int nt = gim.energy.getSizeZ();
 		Clusters[] clusters = new Clusters[nt];
 		int xstart = (gim.nx - (gim.nx / size) * size) / 2;
 		int ystart = (gim.ny - (gim.ny / size) * size) / 2;
 		double max = gim.energy.getMaximum();
 		if (max <= 0)
-			return;
+			return null;
 		
 		int size2 = size * size;
 		for (int t = 0; t < nt; t++) {
@@ -336,53 +402,32 @@ public class OrientationResults {
 							clusters[t].add(new Cluster(x, y, size, size, dx, dy, coherencies, (energies / max)));
 				}
 		}
-		
-		if (params.showVectorTable) {
-			ResultsTable table = new ResultsTable();
-			for (int t = 0; t < nt; t++)
-			for (Cluster c : clusters[t]) {
-				double a = Math.toDegrees(Math.atan2(c.dy, c.dx));
-				if (a < -90)
-					a += 180;
-				if (a > 90)
-					a -= 180;
-				table.incrementCounter();
-				table.addValue("X", c.x + size / 2);
-				table.addValue("Y", c.y + size / 2);
-				table.addValue("Slice", t);
-				table.addValue("DX", -c.dx);
-				table.addValue("DY", c.dy);
-				table.addValue("Orientation", a);
-				table.addValue("Coherency", c.coherency);
-				table.addValue("Energy", c.energy);
-			}
-			table.show("OJ-Table-Vector-Field-");
-		}
-		
-		Overlay overlay = new Overlay();
-		if (params.showVectorOverlay) {
-			double r = scale / 100.0 * size * 0.5;
-			for (int t = 0; t < nt; t++)
-			for (Cluster c : clusters[t]) {
-				double a = r;
-				if (type == 1)
-					a = r * c.energy;
-				else if (type == 2)
-					a = r * c.coherency;
-				else if (type == 3)
-					a = r * c.energy * c.coherency;
+		return clusters;
+	}
 
-				int x1 = (int) Math.round(c.x + size / 2 + a * c.dx);
-				int y1 = (int) Math.round(c.y + size / 2 - a * c.dy);
-				int x2 = (int) Math.round(c.x + size / 2 - a * c.dx);
-				int y2 = (int) Math.round(c.y + size / 2 + a * c.dy);
-				Roi roi = new Line(x1, y1, x2, y2);
-				roi.setPosition(t + 1);
-				//Roi.setColor(new Color(200, 0, (int)(200*Math.random()), 100));
-				overlay.add(roi);
-			}
+	/**
+	 * Creates the table of the vectors of the vector field.
+	 */
+	public static ResultsTable createTableVectorField(Clusters[] clusters, int size) {
+		ResultsTable table = new ResultsTable();
+		for (int t = 0; t < clusters.length; t++)
+		for (Cluster c : clusters[t]) {
+			double a = Math.toDegrees(Math.atan2(c.dy, c.dx));
+			if (a < -90)
+				a += 180;
+			if (a > 90)
+				a -= 180;
+			table.incrementCounter();
+			table.addValue("X", c.x + size / 2);
+			table.addValue("Y", c.y + size / 2);
+			table.addValue("Slice", t);
+			table.addValue("DX", -c.dx);
+			table.addValue("DY", c.dy);
+			table.addValue("Orientation", a);
+			table.addValue("Coherency", c.coherency);
+			table.addValue("Energy", c.energy);
 		}
-		gim.getImagePlus().setOverlay(overlay);
+		return table;
 	}
 
 }
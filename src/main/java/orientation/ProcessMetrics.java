@@ -0,0 +1,359 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+//
+// Author: Daniel Sage
+//
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+package orientation;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import ij.measure.ResultsTable;
+
+/**
+ * Metrics of a run of OrientationProcess, stage by stage and slice by slice:
+ * the wall time, the CPU time, the bytes allocated, the heap in use and its
+ * peak during the stage.
+ * 
+ * A stage is measured by a Probe from begin() to end() on the thread which 
+ * runs it. The tasks of the stage run in the WorkerPool are wrapped by 
+ * measure(), their CPU time and their allocations are added to the probe.
+ * The CPU time and the allocations are -1 if the JVM does not measure them.
+ * 
+ * The CPU time and the allocations of a thread are counted once, in the 
+ * innermost measure running on it: a thread blocked in the WorkerPool may 
+ * run the tasks of other stages or of other slices, their time is excluded 
+ * from the stage which waits. The stage RUN only counts what is outside of 
+ * the other stages.
+ * 
+ * The peak of the heap of a stage is sampled at its begin, at its end and
+ * after each of its tasks. If the peak usage of the heap memory pools has 
+ * grown during the stage, it is taken instead. The peak usage of the pools
+ * is never reset, it is shared by all the runs of the JVM.
+ * 
+ * The stages of the tiles and of the slices computed in parallel are 
+ * recorded separately, their wall times overlap. The stage RUN gives the 
+ * elapsed time of the whole process.
+ * 
+ * @author Daniel Sage
+ */
+public class ProcessMetrics {
+
+	final public static int		ALLOCATION	= 0;
+	final public static int		GRADIENT		= 1;
+	final public static int		SMOOTHING	= 2;
+	final public static int		FEATURES		= 3;
+	final public static int		DISPLAY		= 4;
+	final public static int		RUN			= 5;
+	final public static int		NB_STAGES	= 6;
+
+	final static public String	name[]		= { "Allocation", "Gradient", "Smoothing", "Features", "Display", "Run" };
+
+	private static final ThreadMXBean	threads		= ManagementFactory.getThreadMXBean();
+
+	/** CPU time and bytes allocated by the measures which ended on a thread */
+	private static final ThreadLocal<long[]>	nested	= new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[2];
+		}
+	};
+
+	private ArrayList<Record>			records		= new ArrayList<Record>();
+	private long						peak		= 0;
+
+	/**
+	 * Measure of one stage of one slice, slice is -1 for the whole stack.
+	 */
+	public static class Record {
+		public final int	stage;
+		public final int	slice;
+		/** Wall time in nanoseconds */
+		public final long	wall;
+		/** CPU time in nanoseconds, of all the threads of the stage, nested stages excluded */
+		public final long	cpu;
+		/** Bytes allocated by all the threads of the stage, nested stages excluded */
+		public final long	allocated;
+		/** Bytes of heap in use at the end of the stage, garbage included */
+		public final long	heap;
+		/** Peak of the bytes of heap in use during the stage, garbage included */
+		public final long	peak;
+
+		private Record(int stage, int slice, long wall, long cpu, long allocated, long heap, long peak) {
+			this.stage = stage;
+			this.slice = slice;
+			this.wall = wall;
+			this.cpu = cpu;
+			this.allocated = allocated;
+			this.heap = heap;
+			this.peak = peak;
+		}
+	}
+
+	/**
+	 * Measure in progress of one stage, returned by begin().
+	 */
+	public static class Probe {
+		private int		stage;
+		private int		slice;
+		private long	wall;
+		private long	cpu;
+		private long	allocated;
+		private long	nestedCpu;
+		private long	nestedAllocated;
+		private long	cpuTasks		= 0;
+		private long	allocatedTasks	= 0;
+		private long	poolPeak;
+		private long	heapPeak;
+
+		private synchronized void add(long cpu, long allocated, long heap) {
+			cpuTasks += cpu;
+			allocatedTasks += allocated;
+			heapPeak = Math.max(heapPeak, heap);
+		}
+	}
+
+	/**
+	 * Starts the measure of a stage on the current thread.
+	 */
+	public Probe begin(int stage, int slice) {
+		Probe probe = new Probe();
+		probe.stage = stage;
+		probe.slice = slice;
+		long counts[] = nested.get();
+		probe.nestedCpu = counts[0];
+		probe.nestedAllocated = counts[1];
+		probe.cpu = getCpuTime();
+		probe.allocated = getAllocatedBytes();
+		probe.poolPeak = getPeakUsage();
+		probe.heapPeak = getHeapUsage();
+		probe.wall = System.nanoTime();
+		return probe;
+	}
+
+	/**
+	 * Ends the measure of a stage and records it. Has to be called on the 
+	 * thread which called begin().
+	 */
+	public void end(Probe probe) {
+		long wall = System.nanoTime() - probe.wall;
+		long counts[] = nested.get();
+		long cpu = (probe.cpu < 0 ? -1 : getCpuTime() - probe.cpu - (counts[0] - probe.nestedCpu));
+		long allocated = (probe.allocated < 0 ? -1 : getAllocatedBytes() - probe.allocated - (counts[1] - probe.nestedAllocated));
+		counts[0] += Math.max(0, cpu);
+		counts[1] += Math.max(0, allocated);
+		long heap = getHeapUsage();
+		long stagePeak;
+		synchronized (probe) {
+			if (cpu >= 0)
+				cpu += probe.cpuTasks;
+			if (allocated >= 0)
+				allocated += probe.allocatedTasks;
+			stagePeak = Math.max(heap, probe.heapPeak);
+		}
+		long used = getPeakUsage();
+		if (used > probe.poolPeak)
+			stagePeak = Math.max(stagePeak, used);
+		synchronized (this) {
+			records.add(new Record(probe.stage, probe.slice, wall, cpu, allocated, heap, stagePeak));
+			peak = Math.max(peak, stagePeak);
+		}
+	}
+
+	/**
+	 * Wraps the tasks of a stage so that their CPU time and their allocations
+	 * are added to the probe, whatever the thread which runs them. The time 
+	 * of a task is excluded from the measures in progress on its thread.
+	 */
+	public static Runnable[] measure(final Probe probe, Runnable... tasks) {
+		if (probe == null)
+			return tasks;
+		Runnable measured[] = new Runnable[tasks.length];
+		for (int i = 0; i < tasks.length; i++) {
+			final Runnable task = tasks[i];
+			measured[i] = new Runnable() {
+				@Override
+				public void run() {
+					long counts[] = nested.get();
+					long nestedCpu = counts[0];
+					long nestedAllocated = counts[1];
+					long cpu = getCpuTime();
+					long allocated = getAllocatedBytes();
+					task.run();
+					cpu = (cpu < 0 ? 0 : getCpuTime() - cpu - (counts[0] - nestedCpu));
+					allocated = (allocated < 0 ? 0 : getAllocatedBytes() - allocated - (counts[1] - nestedAllocated));
+					counts[0] += cpu;
+					counts[1] += allocated;
+					probe.add(cpu, allocated, getHeapUsage());
+				}
+			};
+		}
+		return measured;
+	}
+
+	/**
+	 * Returns a copy of the records, in the order of their end.
+	 */
+	public synchronized List<Record> getRecords() {
+		return new ArrayList<Record>(records);
+	}
+
+	/**
+	 * Returns the sum of the wall times of a stage in nanoseconds.
+	 */
+	public synchronized long getWallTime(int stage) {
+		long sum = 0;
+		for (Record record : records)
+			if (record.stage == stage)
+				sum += record.wall;
+		return sum;
+	}
+
+	/**
+	 * Returns the sum of the CPU times of a stage in nanoseconds, or -1.
+	 */
+	public synchronized long getCpuTime(int stage) {
+		long sum = 0;
+		for (Record record : records)
+			if (record.stage == stage)
+				if (record.cpu < 0)
+					return -1;
+				else
+					sum += record.cpu;
+		return sum;
+	}
+
+	/**
+	 * Returns the sum of the bytes allocated in a stage, or -1.
+	 */
+	public synchronized long getAllocatedBytes(int stage) {
+		long sum = 0;
+		for (Record record : records)
+			if (record.stage == stage)
+				if (record.allocated < 0)
+					return -1;
+				else
+					sum += record.allocated;
+		return sum;
+	}
+
+	/**
+	 * Returns the largest peak of the heap of the stages, in bytes. The heap
+	 * is shared by the runs in progress in the JVM.
+	 */
+	public synchronized long getPeakHeap() {
+		return peak;
+	}
+
+	/**
+	 * Returns a table with one row per stage and per slice, followed by the
+	 * sums per stage. The times are in ms and the memory in MB.
+	 */
+	public ResultsTable createTable() {
+		ResultsTable table = new ResultsTable();
+		List<Record> list = getRecords();
+		for (int stage = 0; stage < NB_STAGES; stage++) {
+			int slices = 0;
+			for (Record record : list)
+				if (record.stage == stage)
+					slices = Math.max(slices, record.slice + 1);
+			for (int slice = -1; slice < slices; slice++) {
+				long wall = 0, cpu = 0, allocated = 0, heap = 0, peak = 0;
+				int count = 0;
+				for (Record record : list)
+					if (record.stage == stage && record.slice == slice) {
+						wall += record.wall;
+						cpu = (cpu < 0 || record.cpu < 0 ? -1 : cpu + record.cpu);
+						allocated = (allocated < 0 || record.allocated < 0 ? -1 : allocated + record.allocated);
+						heap = Math.max(heap, record.heap);
+						peak = Math.max(peak, record.peak);
+						count++;
+					}
+				if (count > 0)
+					addRow(table, name[stage], slice < 0 ? "all" : "" + (slice + 1), wall, cpu, allocated, heap, peak);
+			}
+		}
+		for (int stage = 0; stage < NB_STAGES; stage++) {
+			long heap = -1, peak = -1;
+			for (Record record : list)
+				if (record.stage == stage) {
+					heap = Math.max(heap, record.heap);
+					peak = Math.max(peak, record.peak);
+				}
+			if (heap >= 0)
+				addRow(table, name[stage], "total", getWallTime(stage), getCpuTime(stage), getAllocatedBytes(stage), heap, peak);
+		}
+		return table;
+	}
+
+	private static void addRow(ResultsTable table, String stage, String slice, long wall, long cpu, long allocated, long heap, long peak) {
+		table.incrementCounter();
+		table.addValue("Stage", stage);
+		table.addValue("Slice", slice);
+		table.addValue("Wall (ms)", wall * 1e-6);
+		table.addValue("CPU (ms)", cpu < 0 ? Double.NaN : cpu * 1e-6);
+		table.addValue("Allocated (MB)", allocated < 0 ? Double.NaN : allocated / (1024.0 * 1024.0));
+		table.addValue("Heap (MB)", heap / (1024.0 * 1024.0));
+		table.addValue("Peak heap (MB)", peak / (1024.0 * 1024.0));
+	}
+
+	private static long getHeapUsage() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static long getPeakUsage() {
+		long sum = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+				MemoryUsage usage = pool.getPeakUsage();
+				if (usage != null)
+					sum += usage.getUsed();
+			}
+		return sum;
+	}
+
+	private static long getCpuTime() {
+		if (!threads.isCurrentThreadCpuTimeSupported() || !threads.isThreadCpuTimeEnabled())
+			return -1;
+		return threads.getCurrentThreadCpuTime();
+	}
+
+	private static long getAllocatedBytes() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+			if (sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled())
+				return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
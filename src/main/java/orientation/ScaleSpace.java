@@ -0,0 +1,335 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+//
+// Author: Daniel Sage
+//
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+package orientation;
+
+import java.util.Arrays;
+
+import ij.ImagePlus;
+import ij.ImageStack;
+import orientation.filters.Gaussian;
+import orientation.imageware.Builder;
+import orientation.imageware.ImageWare;
+
+/**
+ * Multi-scale structure tensor: the energy, the coherency and the orientation
+ * for a list of values of sigmaST, to compare the scales or to pick one of 
+ * them per pixel.
+ * 
+ * The gradient of a slice is computed once. Its tensor is smoothed by a
+ * cascade of Gaussians: the scales are sorted in increasing order and the
+ * smoothing at sigma[s] is obtained from the smoothing at sigma[s-1] by a 
+ * Gaussian of sigma sqrt(sigma[s]^2 - sigma[s-1]^2), the variances of the 
+ * cascaded filters are additive. Only one slice of gradient and one tensor
+ * are in memory at a time.
+ * 
+ * The results are stacks of nt x ns slices, the slice of the scale s of 
+ * the source slice t is at the index t * ns + s, see getIndex().
+ * 
+ * With a selection criterion, the scale is selected per pixel instead: the
+ * results are stacks of nt slices holding the features at the scale which
+ * maximizes the criterion, and the map of the selected scale. The scales
+ * are visited in one pass, only the features of the current scale are in 
+ * memory. The criterion is the coherency or the energy, normalized by its 
+ * mean over the slice at the same scale: a pixel selects the scale where 
+ * it stands out the most from the rest of the image, which removes the 
+ * global drift of the criterion with sigma.
+ * 
+ * The sweep is based on the gradient, the Hessian is not supported.
+ *
+ * @author Daniel Sage
+ */
+public class ScaleSpace {
+
+	final public static int			SELECT_NONE			= 0;
+	final public static int			SELECT_COHERENCY	= 1;
+	final public static int			SELECT_ENERGY		= 2;
+
+	private LogAbstract				log;
+	private ImageWare				source;
+	private OrientationParameters	params;
+	private double					sigmas[];
+	private ProcessMetrics			metrics		= new ProcessMetrics();
+	private int						selection	= SELECT_NONE;
+
+	public ImageWare				energy;
+	public ImageWare				coherency;
+	public ImageWare				orientation;
+
+	// Selected sigma per pixel, only with a selection criterion
+	public ImageWare				scale;
+
+	public int						nx;
+	public int						ny;
+	public int						nt;
+
+	/**
+	 * Constructor. The scales are the values of sigmaST, they are sorted in
+	 * increasing order; the other parameters are taken from params.
+	 */
+	public ScaleSpace(LogAbstract log, ImageWare source, OrientationParameters params, double sigmas[]) {
+		if (params.gradient == OrientationParameters.HESSIAN)
+			throw new IllegalArgumentException("The multi-scale structure tensor is not available on the Hessian");
+		if (sigmas.length == 0)
+			throw new IllegalArgumentException("The multi-scale structure tensor needs at least one scale");
+		this.log = log;
+		this.source = source;
+		this.params = params.duplicate();
+		this.sigmas = sigmas.clone();
+		Arrays.sort(this.sigmas);
+		nx = source.getWidth();
+		ny = source.getHeight();
+		nt = source.getSizeZ();
+	}
+
+	/**
+	 * Returns the scales, in increasing order.
+	 */
+	public double[] getSigmas() {
+		return sigmas.clone();
+	}
+
+	/**
+	 * Selects the scale per pixel with a criterion SELECT_COHERENCY or 
+	 * SELECT_ENERGY, or keeps all the scales with SELECT_NONE.
+	 */
+	public void setSelection(int selection) {
+		this.selection = selection;
+	}
+
+	/**
+	 * Returns the selection criterion of a macro value, coherency or energy,
+	 * SELECT_NONE for the other values.
+	 */
+	public static int getSelection(String name) {
+		if (name.equals("coherency"))
+			return SELECT_COHERENCY;
+		if (name.equals("energy"))
+			return SELECT_ENERGY;
+		return SELECT_NONE;
+	}
+
+	/**
+	 * Returns the index in the result stacks of the scale s of the slice t,
+	 * or t with a selection criterion.
+	 */
+	public int getIndex(int t, int s) {
+		return (selection == SELECT_NONE ? t * sigmas.length + s : t);
+	}
+
+	/**
+	 * Returns the time and the memory used by the stages of the sweep.
+	 */
+	public ProcessMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Computes the result stacks of all the slices.
+	 */
+	public void run() {
+		log.reset();
+		ProcessMetrics.Probe run = metrics.begin(ProcessMetrics.RUN, -1);
+		WorkerPool.setParallelism(params.threads);
+		int nz = (selection == SELECT_NONE ? nt * sigmas.length : nt);
+		ProcessMetrics.Probe allocation = metrics.begin(ProcessMetrics.ALLOCATION, -1);
+		energy = Builder.create(nx, ny, nz, ImageWare.FLOAT);
+		coherency = Builder.create(nx, ny, nz, ImageWare.FLOAT);
+		orientation = Builder.create(nx, ny, nz, ImageWare.FLOAT);
+		if (selection != SELECT_NONE)
+			scale = Builder.create(nx, ny, nt, ImageWare.FLOAT);
+		metrics.end(allocation);
+
+		// No map is retained in the GroupImage, every slice is computed in a
+		// scratch GroupImage holding only its gradient
+		OrientationParameters p = params.duplicate();
+		p.streaming = true;
+		p.mapped = "";
+		Arrays.fill(p.view, false);
+		GroupImage gim = new GroupImage(new LogMute(), source, p);
+		Gradient.acquireCache();
+		try {
+			for (int t = 0; t < nt; t++)
+				run(gim.crop(t, 0, 0, nx, ny), t);
+		}
+		finally {
+			Gradient.releaseCache();
+		}
+		metrics.end(run);
+		log.finish();
+	}
+
+	/**
+	 * Computes the gradient of the slice t, cropped in the GroupImage part, 
+	 * and the features of its tensor at all the scales.
+	 */
+	private void run(GroupImage part, int t) {
+		int ns = sigmas.length;
+		double w = 100.0 / (nt * (ns + 1));
+		log.progress("Gradient " + (t + 1), t * (ns + 1) * w);
+		ProcessMetrics.Probe gradient = metrics.begin(ProcessMetrics.GRADIENT, t);
+		new Gradient(new LogMute(), part, params).run(0);
+		metrics.end(gradient);
+
+		int size = nx * ny;
+		boolean single = params.floatPrecision;
+		double dchannels[][] = (single ? null : new double[3][size]);
+		float fchannels[][] = (single ? new float[3][size] : null);
+		float gx[] = part.gx.getSliceFloat(0);
+		float gy[] = part.gy.getSliceFloat(0);
+		for (int k = 0; k < size; k++) {
+			double vx = gx[k];
+			double vy = gy[k];
+			if (single) {
+				fchannels[0][k] = (float) (vx * vx);
+				fchannels[1][k] = (float) (vx * vy);
+				fchannels[2][k] = (float) (vy * vy);
+			}
+			else {
+				dchannels[0][k] = vx * vx;
+				dchannels[1][k] = vx * vy;
+				dchannels[2][k] = vy * vy;
+			}
+		}
+
+		// With a selection, the features of a scale are computed in scratch 
+		// arrays and the best criterion of every pixel is kept
+		float e[] = (selection == SELECT_NONE ? null : new float[size]);
+		float c[] = (selection == SELECT_NONE ? null : new float[size]);
+		float o[] = (selection == SELECT_NONE ? null : new float[size]);
+		float best[] = (selection == SELECT_NONE ? null : new float[size]);
+
+		double previous = 0.0;
+		for (int s = 0; s < ns; s++) {
+			log.progress("Scale " + sigmas[s], (t * (ns + 1) + s + 1) * w);
+			double increment = Math.sqrt(sigmas[s] * sigmas[s] - previous * previous);
+			if (increment > 0) {
+				ProcessMetrics.Probe smoothing = metrics.begin(ProcessMetrics.SMOOTHING, t);
+				Gaussian gaussian = (single ? new Gaussian(new LogMute(), 0, fchannels, increment, nx, ny) 
+						: new Gaussian(new LogMute(), 0, dchannels, increment, nx, ny));
+				gaussian.setProbe(smoothing);
+				gaussian.run();
+				metrics.end(smoothing);
+				previous = sigmas[s];
+			}
+			ProcessMetrics.Probe features = metrics.begin(ProcessMetrics.FEATURES, t);
+			if (selection == SELECT_NONE) {
+				e = energy.getSliceFloat(getIndex(t, s));
+				c = coherency.getSliceFloat(getIndex(t, s));
+				o = orientation.getSliceFloat(getIndex(t, s));
+			}
+			double epsilon = params.epsilon;
+			for (int k = 0; k < size; k++) {
+				double xx = (single ? fchannels[0][k] : dchannels[0][k]);
+				double xy = (single ? fchannels[1][k] : dchannels[1][k]);
+				double yy = (single ? fchannels[2][k] : dchannels[2][k]);
+				double trace = xx + yy;
+				e[k] = (float) trace;
+				c[k] = (float) (Math.sqrt((xx - yy) * (xx - yy) + 4.0 * xy * xy) / (trace + epsilon));
+				o[k] = (float) (0.5 * Math.atan2(2.0 * xy, (yy - xx)));
+			}
+			if (selection != SELECT_NONE)
+				select(t, s, e, c, o, best);
+			metrics.end(features);
+		}
+	}
+
+	/**
+	 * Keeps the features of the scale s of the slice t at the pixels where
+	 * the normalized criterion is larger than the best of the previous scales.
+	 */
+	private void select(int t, int s, float e[], float c[], float o[], float best[]) {
+		float criterion[] = (selection == SELECT_ENERGY ? e : c);
+		double mean = 0.0;
+		for (int k = 0; k < criterion.length; k++)
+			mean += criterion[k];
+		mean /= criterion.length;
+		double normalization = (mean > 0 ? 1.0 / mean : 0.0);
+		float energy[] = this.energy.getSliceFloat(t);
+		float coherency[] = this.coherency.getSliceFloat(t);
+		float orientation[] = this.orientation.getSliceFloat(t);
+		float scale[] = this.scale.getSliceFloat(t);
+		for (int k = 0; k < criterion.length; k++) {
+			float value = (float) (criterion[k] * normalization);
+			if (s == 0 || value > best[k]) {
+				best[k] = value;
+				energy[k] = e[k];
+				coherency[k] = c[k];
+				orientation[k] = o[k];
+				scale[k] = (float) sigmas[s];
+			}
+		}
+	}
+
+	/**
+	 * Shows the result stacks as hyperstacks of ns slices and nt frames,
+	 * every slice is labeled by its scale. With a selection criterion, shows
+	 * the features at the selected scale and the map of the selected scale.
+	 */
+	public void show(int countRun) {
+		if (selection != SELECT_NONE) {
+			show(energy, "Energy-selected-" + countRun);
+			show(coherency, "Coherency-selected-" + countRun);
+			ImageWare out = orientation;
+			if (!params.radian) {
+				out = orientation.duplicate();
+				out.multiply(180.0 / Math.PI);
+			}
+			show(out, "Orientation-selected-" + countRun);
+			show(scale, "Scale-selected-" + countRun);
+			return;
+		}
+		show(energy, "Energy", countRun, false);
+		show(coherency, "Coherency", countRun, false);
+		show(orientation, "Orientation", countRun, !params.radian);
+	}
+
+	private void show(ImageWare map, String name, int countRun, boolean degrees) {
+		if (map == null)
+			return;
+		ImageWare out = map;
+		if (degrees) {
+			out = map.duplicate();
+			out.multiply(180.0 / Math.PI);
+		}
+		ImageStack stack = out.buildImageStack();
+		for (int t = 0; t < nt; t++)
+			for (int s = 0; s < sigmas.length; s++)
+				stack.setSliceLabel("sigma=" + sigmas[s], getIndex(t, s) + 1);
+		ImagePlus imp = new ImagePlus(name + "-scales-" + countRun, stack);
+		imp.setDimensions(1, sigmas.length, nt);
+		if (nt > 1)
+			imp.setOpenAsHyperStack(true);
+		imp.show();
+	}
+
+	private void show(ImageWare map, String title) {
+		new ImagePlus(title, map.buildImageStack()).show();
+	}
+}
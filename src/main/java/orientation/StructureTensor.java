@@ -31,8 +31,6 @@ package orientation;
 
 import java.awt.Polygon;
 import java.awt.Rectangle;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 import gui_orientation.Measure;
 import ij.IJ;
@@ -41,17 +39,12 @@ import ij.process.ByteProcessor;
 import orientation.filters.Gaussian;
 import orientation.imageware.Builder;
 import orientation.imageware.ImageWare;
+import orientation.imageware.RecursiveGaussian;
 
 public class StructureTensor implements Runnable {
 
-	/** Maximum number of iterations for the Hessian search optimization */
-	private int maxIteration = 100;
-
-	/** Tolerance to stop the Hessian search optimization */
-	private double tolerance = 1.0;
-
-	/** Step for the Hessian search optimization */
-	private double etta = 1.0;
+	/** Minimal number of rows of a band run in parallel */
+	private static final int MIN_BAND = 64;
 
 	/** Progress bar */
 	private LogAbstract log;
@@ -59,6 +52,13 @@ public class StructureTensor implements Runnable {
 	private GroupImage gim;
 	private OrientationParameters params;
 
+	/** Feature to compute, or -1 to compute all the allocated maps */
+	private int feature = -1;
+
+	/** Metrics of the stages, null to not measure them */
+	private ProcessMetrics metrics = null;
+	private int slice = 0;
+
 	/**
 	 * Constructor.
 	 */
@@ -68,161 +68,273 @@ public class StructureTensor implements Runnable {
 		this.params = params;
 	}
 
+	/**
+	 * Constructor to compute the map of one feature only, used to compute a
+	 * feature on demand.
+	 */
+	public StructureTensor(LogAbstract log, GroupImage gim, OrientationParameters params, int feature) {
+		this(log, gim, params);
+		this.feature = feature;
+	}
+
+	/**
+	 * Records the smoothing and the feature extraction in the metrics, as 
+	 * stages of the slice of the stack.
+	 */
+	public void setMetrics(ProcessMetrics metrics, int slice) {
+		this.metrics = metrics;
+		this.slice = slice;
+	}
+
 	@Override
 	public void run() {
+		for (int t = 0; t < gim.nt; t++)
+			run(t);
+		if (params.isServiceHarris())
+			gim.minmaxHarris = gim.harris.getMinMax();
+	}
+
+	/**
+	 * Computes the structure tensor features of the slice t only.
+	 * 
+	 * The slices are independent, this method could be called concurrently
+	 * on different slices by different instances of StructureTensor.
+	 */
+	public void run(int t) {
 		if (params.gradient == OrientationParameters.HESSIAN)
-			analysisOnHessian();
+			analysisOnHessian(t);
 		else
-			analysisOnGradient();
+			analysisOnGradient(t);
 	}
 
 	/**
 	 * Compute all the structure tensor based on the 2-components gradient vector.
 	 * 
-	 * The 3 Gaussian filters has implemented in parallel (multithread).
+	 * The 3 components of the tensor are smoothed together in one Gaussian,
+	 * split in bands of columns and of rows run in the shared WorkerPool.
+	 * In float precision, the components are stored in float arrays, half
+	 * the memory of the double arrays.
 	 * 
 	 * @author Daniel Sage
 	 */
-	private void analysisOnGradient() {
+	private void analysisOnGradient(int t) {
 		int mx = gim.nx;
 		int my = gim.ny;
-		int nt = gim.nt;
 		double K = params.harrisK;
 
-		double xx, yy, xy;
-
-		double[][] dxx = new double[mx][my];
-		double[][] dxy = new double[mx][my];
-		double[][] dyy = new double[mx][my];
-
-		for (int t = 0; t < nt; t++) {
-			log.progress("Tensor " + (t + 1), 0);
-			gim.gx.getXY(0, 0, t, dxx);
-			gim.gy.getXY(0, 0, t, dyy);
-			for (int y = 0; y < my; y++) {
-				log.increment(15.0 / my);
-				for (int x = 0; x < mx; x++) {
-					dxy[x][y] = dxx[x][y] * dyy[x][y];
-					dyy[x][y] = dyy[x][y] * dyy[x][y];
-					dxx[x][y] = dxx[x][y] * dxx[x][y];
+		ProcessMetrics.Probe smoothing = begin(ProcessMetrics.SMOOTHING);
+		// In float precision, the components are stored in float, the products
+		// and the features are still evaluated in double
+		boolean single = params.floatPrecision;
+		double[] dxx = (single ? null : new double[mx * my]);
+		double[] dxy = (single ? null : new double[mx * my]);
+		double[] dyy = (single ? null : new double[mx * my]);
+		float[] fxx = (single ? new float[mx * my] : null);
+		float[] fxy = (single ? new float[mx * my] : null);
+		float[] fyy = (single ? new float[mx * my] : null);
+
+		log.progress("Tensor " + (t + 1), 0);
+		float[] gx = gim.gx.getSliceFloat(t);
+		float[] gy = gim.gy.getSliceFloat(t);
+		for (int y = 0; y < my; y++) {
+			log.increment(15.0 / my);
+			for (int x = 0, k = y * mx; x < mx; x++, k++) {
+				double vx = gx[k];
+				double vy = gy[k];
+				if (single) {
+					fxy[k] = (float) (vx * vy);
+					fyy[k] = (float) (vy * vy);
+					fxx[k] = (float) (vx * vx);
 				}
-			}
-			if (params.sigmaST > 0) {
-				Gaussian gxx = new Gaussian(log, 20, dxx, params.sigmaST, mx, my);
-				Gaussian gyy = new Gaussian(log, 20, dyy, params.sigmaST, mx, my);
-				Gaussian gxy = new Gaussian(log, 20, dxy, params.sigmaST, mx, my);
-				ExecutorService executor = Executors.newFixedThreadPool(3);
-				executor.execute(gxx);
-				executor.execute(gxy);
-				executor.execute(gyy);
-				executor.shutdown();
-				while (!executor.isTerminated()) {
+				else {
+					dxy[k] = vx * vy;
+					dyy[k] = vy * vy;
+					dxx[k] = vx * vx;
 				}
 			}
-
-			for (int y = 0; y < my; y++) {
-				log.increment(25.0 / my);
-				for (int x = 0; x < mx; x++) {
-					xx = dxx[x][y];
-					yy = dyy[x][y];
-					xy = dxy[x][y];
-					gim.energy.putPixel(x, y, t, xx + yy);
-					gim.coherency.putPixel(x, y, t, computeCoherency(xx, yy, xy, params.epsilon));
-					gim.directionality.putPixel(x, y, t, computeDirectionality(xx, yy, xy));
-					gim.fa.putPixel(x, y, t, computeFA(xx, yy, xy, params.epsilon));
-					gim.orientation.putPixel(x, y, t, computeOrientation(xx, yy, xy));
-					if (params.isServiceHarris())
-						gim.harris.putPixel(x, y, t, (xx * yy - xy * xy - K * (xx + yy) * (xx + yy)));
-				}
-			}
-			
-			if (params.isServiceHarris()) {
-				gim.harris.smoothGaussian(0.1, 0.1, 0);
-				gim.minmaxHarris = gim.harris.getMinMax();
+		}
+		if (params.sigmaST > 0) {
+			Gaussian gaussian = (single ? new Gaussian(log, 60, new float[][] { fxx, fxy, fyy }, params.sigmaST, mx, my) 
+					: new Gaussian(log, 60, new double[][] { dxx, dxy, dyy }, params.sigmaST, mx, my));
+			gaussian.setProbe(smoothing);
+			gaussian.run();
+		}
+		end(smoothing);
+
+		ProcessMetrics.Probe features = begin(ProcessMetrics.FEATURES);
+		// Fused kernel: all the features of a pixel are computed in one pass and
+		// written directly into the float arrays of the slice t.
+		// delta = (L1-L2)^2, directionality J2 = (L1-L2)^2 / 4,
+		// fractional anisotropy FA = |L1-L2| / sqrt(L1^2 + L2^2) bounded in [0..1].
+		float[] energy = getSlice(gim.energy, OrientationParameters.TENSOR_ENERGY, t);
+		float[] coherency = getSlice(gim.coherency, OrientationParameters.TENSOR_COHERENCY, t);
+		float[] directionality = getSlice(gim.directionality, OrientationParameters.TENSOR_DIRECTIONALITY, t);
+		float[] fa = getSlice(gim.fa, OrientationParameters.TENSOR_FA, t);
+		float[] orientation = getSlice(gim.orientation, OrientationParameters.TENSOR_ORIENTATION, t);
+		float[] harris = getSlice(gim.harris, OrientationParameters.HARRIS, t);
+		double epsilon = params.epsilon;
+		for (int y = 0; y < my; y++) {
+			log.increment(25.0 / my);
+			for (int x = 0, k = y * mx; x < mx; x++, k++) {
+				double xx = (single ? fxx[k] : dxx[k]);
+				double yy = (single ? fyy[k] : dyy[k]);
+				double xy = (single ? fxy[k] : dxy[k]);
+				double trace = xx + yy;
+				double delta = (xx - yy) * (xx - yy) + 4.0 * xy * xy;
+				if (energy != null)
+					energy[k] = (float) trace;
+				if (coherency != null)
+					coherency[k] = (float) (Math.sqrt(delta) / (trace + epsilon));
+				if (directionality != null)
+					directionality[k] = (float) (delta / 4.0);
+				if (fa != null)
+					fa[k] = (float) Math.sqrt(delta / (xx * xx + yy * yy + 2.0 * xy * xy + epsilon));
+				if (orientation != null)
+					orientation[k] = (float) (0.5 * Math.atan2(2.0 * xy, (yy - xx)));
+				if (harris != null)
+					harris[k] = (float) (xx * yy - xy * xy - K * trace * trace);
 			}
 		}
+
+		if (harris != null)
+			new RecursiveGaussian(RecursiveGaussian.getPole(0.1), 3).filter(harris, mx, my);
+		end(features);
 	}
 
 	/**
 	 * Compute all the structure tensor based on the 3-components hessian vector.
 	 * 
+	 * The products and the features are computed by bands of rows run in the
+	 * shared WorkerPool. The features of a pixel only depend on its tensor,
+	 * the result does not depend on the number of threads.
+	 * 
 	 * @author Pad Pedram
 	 */
-	private void analysisOnHessian() {
-
-		int NIP = 8;
-
-		int mx = gim.nx;
-		int my = gim.ny;
-		int nt = gim.nt;
-
-		double[][] fxxfxx = new double[mx][my];
-		double[][] fxyfxy = new double[mx][my];
-		double[][] fyyfyy = new double[mx][my];
-		double[][] fxxfyy = new double[mx][my];
-		double[][] fxxfxy = new double[mx][my];
-		double[][] fyyfxy = new double[mx][my];
-
-		double[][] hxx = new double[mx][my];
-		double[][] hyy = new double[mx][my];
-		double[][] hxy = new double[mx][my];
-
-		double hfeatureMax[] = new double[4];
-		double hfeatureMin[] = new double[4];
-		double[] htensor = new double[6];
-		for (int t = 0; t < nt; t++) {
-
-			gim.hxx.getXY(0, 0, t, hxx);
-			gim.hyy.getXY(0, 0, t, hyy);
-			gim.hxy.getXY(0, 0, t, hxy);
-			for (int y = 0; y < my; y++)
-				for (int x = 0; x < mx; x++) {
-					fxxfxx[x][y] = hxx[x][y] * hxx[x][y];
-					fxyfxy[x][y] = hxy[x][y] * hxy[x][y];
-					fyyfyy[x][y] = hyy[x][y] * hyy[x][y];
-					fxxfyy[x][y] = hxx[x][y] * hyy[x][y];
-					fxxfxy[x][y] = hxx[x][y] * hxy[x][y];
-					fyyfxy[x][y] = hyy[x][y] * hxy[x][y];
+	private void analysisOnHessian(int t) {
+
+		final int mx = gim.nx;
+		final int my = gim.ny;
+
+		ProcessMetrics.Probe smoothing = begin(ProcessMetrics.SMOOTHING);
+		// The 6 products of the Hessian components: xx*xx, xy*xy, yy*yy, 
+		// xx*yy, xx*xy and yy*xy, stored in float in float precision
+		final boolean single = params.floatPrecision;
+		final double[][] dchannels = (single ? null : new double[6][mx * my]);
+		final float[][] fchannels = (single ? new float[6][mx * my] : null);
+
+		final float[] hxx = gim.hxx.getSliceFloat(t);
+		final float[] hyy = gim.hyy.getSliceFloat(t);
+		final float[] hxy = gim.hxy.getSliceFloat(t);
+		final int bands[] = getBands(my);
+		Runnable products[] = new Runnable[bands.length - 1];
+		for (int i = 0; i < products.length; i++) {
+			final int k0 = bands[i] * mx;
+			final int k1 = bands[i + 1] * mx;
+			products[i] = new Runnable() {
+				@Override
+				public void run() {
+					double[] htensor = new double[6];
+					for (int k = k0; k < k1; k++) {
+						double xx = hxx[k];
+						double yy = hyy[k];
+						double xy = hxy[k];
+						htensor[0] = xx * xx;
+						htensor[1] = xy * xy;
+						htensor[2] = yy * yy;
+						htensor[3] = xx * yy;
+						htensor[4] = xx * xy;
+						htensor[5] = yy * xy;
+						for (int c = 0; c < 6; c++)
+							if (single)
+								fchannels[c][k] = (float) htensor[c];
+							else
+								dchannels[c][k] = htensor[c];
+					}
 				}
-			log.progress("Tensor " + t, 75);
-			if (params.sigmaST > 0) {
-				Gaussian[] gaussians = new Gaussian[6];
-				gaussians[0] = new Gaussian(log, 10, fxxfxx, params.sigmaST, mx, my);
-				gaussians[1] = new Gaussian(log, 10, fxyfxy, params.sigmaST, mx, my);
-				gaussians[2] = new Gaussian(log, 10, fyyfyy, params.sigmaST, mx, my);
-				gaussians[3] = new Gaussian(log, 10, fxxfyy, params.sigmaST, mx, my);
-				gaussians[4] = new Gaussian(log, 10, fxxfxy, params.sigmaST, mx, my);
-				gaussians[5] = new Gaussian(log, 10, fyyfxy, params.sigmaST, mx, my);
-				ExecutorService executor = Executors.newFixedThreadPool(6);
-				for (int e = 0; e < 6; e++)
-					executor.execute(gaussians[e]);
-				executor.shutdown();
-				while (!executor.isTerminated())
-					;
-			}
-			log.progress("Tensor " + t, 82);
-
-			for (int x = 0; x < mx; x++)
-				for (int y = 0; y < my; y++) {
-					htensor[0] = fxxfxx[x][y];
-					htensor[1] = fxyfxy[x][y];
-					htensor[2] = fyyfyy[x][y];
-					htensor[3] = fxxfyy[x][y];
-					htensor[4] = fxxfxy[x][y];
-					htensor[5] = fyyfxy[x][y];
-
-					hfeatureMax = hessianMaximizer(htensor, NIP);
-					hfeatureMin = hessianMinimizer(htensor, NIP);
-					gim.orientation.putPixel(x, y, t, hfeatureMax[0]);
-					gim.energy.putPixel(x, y, t, hfeatureMax[1]);
-					gim.coherency.putPixel(x, y, t,
-							(hfeatureMax[1] - hfeatureMin[1]) / (hfeatureMax[1] + hfeatureMin[1]));
-					double dL = hfeatureMax[1] - hfeatureMin[1];
-					gim.directionality.putPixel(x, y, t, dL * dL / 4.0);
-					double sL2 = hfeatureMax[1] * hfeatureMax[1] + hfeatureMin[1] * hfeatureMin[1];
-					gim.fa.putPixel(x, y, t, Math.sqrt(dL * dL / (sL2 + params.epsilon)));
+			};
+		}
+		WorkerPool.invokeAll(ProcessMetrics.measure(smoothing, products));
+		log.progress("Tensor " + t, 75);
+		if (params.sigmaST > 0) {
+			Gaussian gaussian = (single ? new Gaussian(log, 60, fchannels, params.sigmaST, mx, my) 
+					: new Gaussian(log, 60, dchannels, params.sigmaST, mx, my));
+			gaussian.setProbe(smoothing);
+			gaussian.run();
+		}
+		end(smoothing);
+		log.progress("Tensor " + t, 82);
+
+		ProcessMetrics.Probe features = begin(ProcessMetrics.FEATURES);
+		final float[] energy = getSlice(gim.energy, OrientationParameters.TENSOR_ENERGY, t);
+		final float[] coherency = getSlice(gim.coherency, OrientationParameters.TENSOR_COHERENCY, t);
+		final float[] directionality = getSlice(gim.directionality, OrientationParameters.TENSOR_DIRECTIONALITY, t);
+		final float[] fa = getSlice(gim.fa, OrientationParameters.TENSOR_FA, t);
+		final float[] orientation = getSlice(gim.orientation, OrientationParameters.TENSOR_ORIENTATION, t);
+		final double epsilon = params.epsilon;
+		Runnable kernels[] = new Runnable[bands.length - 1];
+		for (int i = 0; i < kernels.length; i++) {
+			final int k0 = bands[i] * mx;
+			final int k1 = bands[i + 1] * mx;
+			kernels[i] = new Runnable() {
+				@Override
+				public void run() {
+					double[] extrema = new double[4];
+					double[] htensor = new double[6];
+					for (int k = k0; k < k1; k++) {
+						for (int c = 0; c < 6; c++)
+							htensor[c] = (single ? fchannels[c][k] : dchannels[c][k]);
+						hessianExtrema(htensor, extrema);
+						double max = extrema[1];
+						double min = extrema[3];
+						if (orientation != null)
+							orientation[k] = (float) extrema[0];
+						if (energy != null)
+							energy[k] = (float) max;
+						if (coherency != null)
+							coherency[k] = (float) ((max - min) / (max + min));
+						double dL = max - min;
+						if (directionality != null)
+							directionality[k] = (float) (dL * dL / 4.0);
+						double sL2 = max * max + min * min;
+						if (fa != null)
+							fa[k] = (float) Math.sqrt(dL * dL / (sL2 + epsilon));
+					}
 				}
+			};
 		}
+		WorkerPool.invokeAll(ProcessMetrics.measure(features, kernels));
+		end(features);
+	}
+
+	/**
+	 * Returns the limits of the bands of rows run in parallel, the band i
+	 * covers the rows bands[i] to bands[i+1]-1.
+	 */
+	private static int[] getBands(int ny) {
+		int n = Math.max(1, Math.min(WorkerPool.getParallelism(), ny / MIN_BAND));
+		int bands[] = new int[n + 1];
+		for (int i = 0; i <= n; i++)
+			bands[i] = i * ny / n;
+		return bands;
+	}
+
+	private ProcessMetrics.Probe begin(int stage) {
+		return (metrics == null ? null : metrics.begin(stage, slice));
+	}
+
+	private void end(ProcessMetrics.Probe probe) {
+		if (probe != null)
+			metrics.end(probe);
+	}
+
+	/**
+	 * Returns the slice t of the map of a feature, or null if the map is not
+	 * allocated or if the feature is not the one to compute.
+	 */
+	private float[] getSlice(ImageWare map, int feature, int t) {
+		if (map == null || (this.feature >= 0 && this.feature != feature))
+			return null;
+		return map.getSliceFloat(t);
 	}
 
 	/**
@@ -289,26 +401,6 @@ public class StructureTensor implements Runnable {
 		return coherency;
 	}
 
-	/**
-	 * Evaluates the directionality (invariant J2 = (L1-L2)^2 / 4)
-	 * based on the gradient information.
-	 * 
-	 * @author Daniel Sage
-	 */
-	private double computeDirectionality(double xx, double yy, double xy) {
-		return ((xx - yy) * (xx - yy) + 4.0 * xy * xy) / 4.0;
-	}
-
-	/**
-	 * Evaluates the fractional anisotropy FA = |L1-L2| / sqrt(L1^2 + L2^2)
-	 * based on the gradient information. Bounded in [0..1].
-	 *
-	 * @author Daniel Sage
-	 */
-	private double computeFA(double xx, double yy, double xy, double epsilon) {
-		return Math.sqrt(((xx - yy) * (xx - yy) + 4.0 * xy * xy) / (xx * xx + yy * yy + 2.0 * xy * xy + epsilon));
-	}
-
 	/**
 	 * Evaluates the orientation based the gradient information.
 	 *
@@ -319,187 +411,184 @@ public class StructureTensor implements Runnable {
 	}
 
 	/**
-	 * Maximizes the hessian vector.
+	 * Computes the extrema of the Hessian tensor, the smoothed square of the
+	 * second derivative in the direction alpha:
+	 * f(alpha) = <(c^2 hxx + 2 c s hxy + s^2 hyy)^2> with c = cos(alpha) and 
+	 * s = sin(alpha), given by the 6 components of in[]: hxx^2, hxy^2, hyy^2,
+	 * hxx*hyy, hxx*hxy and hyy*hxy.
 	 * 
-	 * @author Pad Pedram
+	 * f is a trigonometric polynomial of degree 2 in phi = 2 alpha:
+	 * f = a0 + a1 cos(phi) + b1 sin(phi) + a2 cos(2 phi) + b2 sin(2 phi).
+	 * The roots of its derivative are the roots of a quartic in u = tan(phi/2),
+	 * solved in closed form (Ferrari) and refined by Newton steps. The 
+	 * extrema are the best of these roots and of phi = 0 and phi = pi.
+	 * 
+	 * Returns in out[] the orientation of the maximum in [-pi/2, pi/2), the 
+	 * maximum, the orientation of the minimum and the minimum. No allocation,
+	 * the method could be called concurrently.
+	 * 
+	 * @author Daniel Sage
 	 */
-	private double[] hessianMaximizer(double[] in, int NIP) {
-		double out[] = new double[4];
-		double coefA = in[0] - 4.0 * in[1] + in[2] - 2.0 * in[3];
-		double coefB = 2.0 * in[1] - in[2] + in[3];
-
-		double[] alp = new double[NIP];
-		double[] y = new double[NIP];
-
-		double ma = -10000;
-		int mi = 0;
-		double amp = 0;
-
-		for (int i = 0; i < NIP; i++) {
-			alp[i] = i * Math.PI / (NIP - 1) - Math.PI / 2;
-			y[i] = hessianTensorEvaluation(in, alp[i], coefA, coefB);
-			if (y[i] > ma) {
-				ma = y[i];
-				mi = i;
-				amp = alp[mi];
+	static void hessianExtrema(double in[], double out[]) {
+		double a1 = 0.5 * (in[0] - in[2]);
+		double b1 = in[4] + in[5];
+		double a2 = 0.125 * (in[0] + in[2] - 4.0 * in[1] - 2.0 * in[3]);
+		double b2 = 0.5 * (in[4] - in[5]);
+		double a0 = 0.375 * (in[0] + in[2]) + 0.5 * in[1] + 0.25 * in[3];
+
+		// Derivative f' = 0 as a quartic e4 u^4 + e3 u^3 + e2 u^2 + e1 u + e0 = 0
+		double e4 = 2.0 * b2 - b1;
+		double e3 = 8.0 * a2 - 2.0 * a1;
+		double e2 = -12.0 * b2;
+		double e1 = -2.0 * a1 - 8.0 * a2;
+		double e0 = b1 + 2.0 * b2;
+
+		// Candidates phi = 0 and phi = pi, then the roots of the quartic
+		out[1] = -Double.MAX_VALUE;
+		out[3] = Double.MAX_VALUE;
+		hessianCandidate(1.0, 0.0, a0, a1, b1, a2, b2, out);
+		hessianCandidate(-1.0, 0.0, a0, a1, b1, a2, b2, out);
+
+		if (e4 == 0.0 && e0 == 0.0) {
+			// b1 = b2 = 0, f' = -sin(phi) (a1 + 4 a2 cos(phi))
+			if (Math.abs(a1) < 4.0 * Math.abs(a2)) {
+				double c = -a1 / (4.0 * a2);
+				double s = Math.sqrt(1.0 - c * c);
+				hessianCandidate(c, s, a0, a1, b1, a2, b2, out);
+				hessianCandidate(c, -s, a0, a1, b1, a2, b2, out);
 			}
 		}
-
-		double dy = Double.MAX_VALUE;
-		double ddy = 0;
-		double st = 0;
-		int iteration = 0;
-		boolean flag = false;
-		double amt = 0;
-
-		do {
-			dy = hessianTensorDerivative(in, amp, coefA, coefB);
-			ddy = hessianTensor2Derivative(in, amp, coefA, coefB);
-			flag = false;
-			if (ddy < 0) {
-				st = dy / ddy;
-				if (st < Math.PI) {
-					amt = amp - st;
-					if (hessianTensorEvaluation(in, amp, coefA, coefB) < hessianTensorEvaluation(in, amt, coefA,
-							coefB)) {
-						amp = amt;
-						flag = true;
-					}
+		else {
+			// The polynomial is solved in u = tan(phi/2), or in w = 1/u if
+			// its leading coefficient is the smallest, phi is then close to pi
+			boolean reversed = Math.abs(e4) < Math.abs(e0);
+			double lead = (reversed ? e0 : e4);
+			double A = (reversed ? e1 : e3) / lead;
+			double B = e2 / lead;
+			double C = (reversed ? e3 : e1) / lead;
+			double D = (reversed ? e4 : e0) / lead;
+
+			// Depressed quartic y^4 + p y^2 + q y + r = 0, with u = y - A/4
+			double A2 = A * A;
+			double p = B - 0.375 * A2;
+			double q = C - 0.5 * A * B + 0.125 * A2 * A;
+			double r = D - 0.25 * A * C + 0.0625 * A2 * B - 0.01171875 * A2 * A2;
+			double shift = -0.25 * A;
+
+			// Resolvent cubic m^3 + p m^2 + (p^2/4 - r) m - q^2/8 = 0, largest root
+			double m = largestCubicRoot(p, 0.25 * p * p - r, -0.125 * q * q);
+			double roots[] = { 0, 0, 0, 0 };
+			int n = 0;
+			if (m > 1e-12 * (Math.abs(p) + Math.sqrt(Math.abs(r)) + 1e-300)) {
+				// Two quadratics y^2 +/- s y + (p/2 + m -/+ q/(2s)) = 0
+				double sq = Math.sqrt(2.0 * m);
+				n = quadraticRoots(sq, 0.5 * p + m - 0.5 * q / sq, roots, n);
+				n = quadraticRoots(-sq, 0.5 * p + m + 0.5 * q / sq, roots, n);
+			}
+			else {
+				// Biquadratic y^4 + p y^2 + r = 0
+				double disc = p * p - 4.0 * r;
+				if (disc >= 0.0) {
+					double z1 = 0.5 * (-p + Math.sqrt(disc));
+					double z2 = 0.5 * (-p - Math.sqrt(disc));
+					n = squareRoots(z1, roots, n);
+					n = squareRoots(z2, roots, n);
+				}
+				else {
+					// Real part of the square roots of a complex z
+					double modulus = Math.sqrt(r > 0.0 ? r : 0.0);
+					double re = Math.sqrt(0.5 * (modulus - 0.5 * p > 0.0 ? modulus - 0.5 * p : 0.0));
+					roots[n++] = re;
+					roots[n++] = -re;
 				}
 			}
-			if (!flag) {
-				do {
-					do {
-						etta *= 0.8;
-						st = etta * dy;
-					} while (st > Math.PI);
-					amt = amp + st;
-				} while (hessianTensorEvaluation(in, amp, coefA, coefB) > hessianTensorEvaluation(in, amt, coefA,
-						coefB));
-				amp = amt;
+
+			for (int i = 0; i < n; i++) {
+				double u = roots[i] + shift;
+				// Newton steps on the quartic
+				for (int k = 0; k < 2; k++) {
+					double v = (((u + A) * u + B) * u + C) * u + D;
+					double d = ((4.0 * u + 3.0 * A) * u + 2.0 * B) * u + C;
+					if (d != 0.0)
+						u -= v / d;
+				}
+				double den = 1.0 / (1.0 + u * u);
+				if (reversed)
+					hessianCandidate((u * u - 1.0) * den, 2.0 * u * den, a0, a1, b1, a2, b2, out);
+				else
+					hessianCandidate((1.0 - u * u) * den, 2.0 * u * den, a0, a1, b1, a2, b2, out);
 			}
-			iteration++;
-		} while ((dy > tolerance) && (iteration < maxIteration));
-
-		out[0] = Math.PI * (amp / Math.PI + 1 - Math.ceil(amp / Math.PI + 0.5));
-		out[1] = hessianTensorEvaluation(in, amp, coefA, coefB);
-		out[2] = dy;
-		out[3] = iteration;
-		return out;
+		}
+
+		// The orientation alpha = phi / 2 in [-pi/2, pi/2)
+		out[0] = 0.5 * out[0];
+		out[2] = 0.5 * out[2];
+		if (out[0] >= 0.5 * Math.PI)
+			out[0] -= Math.PI;
+		if (out[2] >= 0.5 * Math.PI)
+			out[2] -= Math.PI;
 	}
 
 	/**
-	 * Minimizes the hessian vector.
-	 * 
-	 * @author Pad Pedram
+	 * Evaluates f at the angle phi given by its cosine and sine, and keeps it
+	 * in out[] if it is a new maximum or a new minimum. The angle phi is 
+	 * stored temporarily in out[0] and out[2].
 	 */
-	private double[] hessianMinimizer(double[] in, int NIP) {
-		double out[] = new double[4];
-
-		double coefA = in[0] - 4.0 * in[1] + in[2] - 2.0 * in[3];
-		double coefB = 2.0 * in[1] - in[2] + in[3];
-		double[] alp = new double[NIP];
-		double[] y = new double[NIP];
-
-		double ma = 10000;
-		int mi = 0;
-		double amp = 0;
-
-		for (int i = 0; i < NIP; i++) {
-			alp[i] = i * Math.PI / (NIP - 1) - Math.PI / 2;
-			y[i] = hessianTensorEvaluation(in, alp[i], coefA, coefB);
-			if (y[i] < ma) {
-				ma = y[i];
-				mi = i;
-				amp = alp[mi];
-			}
+	private static void hessianCandidate(double c, double s, double a0, double a1, double b1, double a2, double b2, double out[]) {
+		double f = a0 + a1 * c + b1 * s + a2 * (c * c - s * s) + 2.0 * b2 * c * s;
+		if (f > out[1]) {
+			out[1] = f;
+			out[0] = Math.atan2(s, c);
+		}
+		if (f < out[3]) {
+			out[3] = f;
+			out[2] = Math.atan2(s, c);
 		}
-
-		double dy = Double.MAX_VALUE;
-		double ddy = 0;
-		double st = 0;
-		int iteration = 0;
-		boolean flag = false;
-		double amt = 0;
-
-		do {
-			dy = hessianTensorDerivative(in, amp, coefA, coefB);
-			ddy = hessianTensor2Derivative(in, amp, coefA, coefB);
-			flag = false;
-			if (ddy > 0) {
-				st = dy / ddy;
-				if (st < Math.PI) {
-					amt = amp - st;
-					if (hessianTensorEvaluation(in, amp, coefA, coefB) > hessianTensorEvaluation(in, amt, coefA,
-							coefB)) {
-						amp = amt;
-						flag = true;
-					}
-				}
-			}
-			if (!flag) {
-				do {
-					do {
-						etta *= 0.8;
-						st = etta * dy;
-					} while (st > Math.PI);
-					amt = amp - st;
-				} while (hessianTensorEvaluation(in, amp, coefA, coefB) < hessianTensorEvaluation(in, amt, coefA,
-						coefB));
-				amp = amt;
-			}
-			iteration++;
-		} while ((dy > tolerance) && (iteration < maxIteration));
-
-		out[0] = Math.PI * (amp / Math.PI + 1 - Math.ceil(amp / Math.PI + 0.5));
-		out[1] = hessianTensorEvaluation(in, amp, coefA, coefB);
-		out[2] = dy;
-		out[3] = iteration;
-
-		return out;
 	}
 
 	/**
-	 * Evaluates the Hessian Tensor value.
-	 * 
-	 * @author Pad Pedram
+	 * Returns the largest real root of the cubic m^3 + a m^2 + b m + c = 0.
 	 */
-	private double hessianTensorEvaluation(double[] coef, double alp, double coefA, double coefB) {
-		double cos = Math.cos(alp);
-		double sin = Math.sin(alp);
-		double cos2 = cos * cos;
-		double y = coefA * cos2 * cos2 + 2.0 * coefB * cos2 + coef[2] + 4.0 * coef[4] * cos2 * cos * sin
-				+ 4.0 * coef[5] * cos * sin * sin * sin;
-		return y;
+	private static double largestCubicRoot(double a, double b, double c) {
+		double a3 = a / 3.0;
+		double P = b - a * a3;
+		double Q = 2.0 * a3 * a3 * a3 - a3 * b + c;
+		double delta = 0.25 * Q * Q + P * P * P / 27.0;
+		if (delta > 0.0) {
+			double sq = Math.sqrt(delta);
+			return Math.cbrt(-0.5 * Q + sq) + Math.cbrt(-0.5 * Q - sq) - a3;
+		}
+		if (P == 0.0)
+			return -a3;
+		double rho = Math.sqrt(-P / 3.0);
+		double arg = -0.5 * Q / (rho * rho * rho);
+		arg = (arg > 1.0 ? 1.0 : (arg < -1.0 ? -1.0 : arg));
+		return 2.0 * rho * Math.cos(Math.acos(arg) / 3.0) - a3;
 	}
 
 	/**
-	 * Evaluates the Hessian Tensor derivative value.
-	 * 
-	 * @author Pad Pedram
+	 * Adds the real parts of the roots of y^2 + b y + c = 0 to roots[] from
+	 * the index n, returns the new number of roots.
 	 */
-	private double hessianTensorDerivative(double[] coef, double alp, double coefA, double coefB) {
-		double cos = Math.cos(alp);
-		double sin = Math.sin(alp);
-		double cos2 = cos * cos;
-		double dy = -4.0 * coefA * cos2 * cos * sin - 4.0 * coefB * cos * sin
-				+ 4.0 * (5.0 * coef[5] - 3.0 * coef[4]) * cos2 + 16.0 * (coef[4] - coef[5]) * cos2 * cos2
-				- 4.0 * coef[5];
-		return dy;
+	private static int quadraticRoots(double b, double c, double roots[], int n) {
+		double disc = b * b - 4.0 * c;
+		if (disc < 0.0) {
+			roots[n++] = -0.5 * b;
+			return n;
+		}
+		double sq = Math.sqrt(disc);
+		roots[n++] = 0.5 * (-b + sq);
+		roots[n++] = 0.5 * (-b - sq);
+		return n;
 	}
 
 	/**
-	 * Evaluates the Hessian Tensor second derivative value.
-	 * 
-	 * @author Pad Pedram
+	 * Adds the real square roots of z, or 0 if z is negative, to roots[].
 	 */
-	private double hessianTensor2Derivative(double[] coef, double alp, double coefA, double coefB) {
-		double cos = Math.cos(alp);
-		double sin = Math.sin(alp);
-		double cos2 = cos * cos;
-		double ddy = -16.0 * coefA * cos2 * cos2 - 8.0 * (5.0 * coef[5] - 3.0 * coef[4]) * cos * sin
-				+ 4.0 * (3.0 * coef[0] - 16.0 * coef[1] + 5.0 * coef[2] - 8.0 * coef[3]) * cos2
-				- 64.0 * (coef[4] - coef[5]) * cos2 * cos * sin + 4.0 * coefB;
-		return ddy;
+	private static int squareRoots(double z, double roots[], int n) {
+		double sq = Math.sqrt(z > 0.0 ? z : 0.0);
+		roots[n++] = sq;
+		roots[n++] = -sq;
+		return n;
 	}
-}
\ No newline at end of file
+}
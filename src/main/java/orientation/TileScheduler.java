@@ -0,0 +1,154 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+// 
+// Author: Daniel Sage
+// 
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//  
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey 
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and 
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+package orientation;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import orientation.filters.Gaussian;
+
+/**
+ * Tile scheduler for the large slices.
+ * 
+ * A slice is split into tiles processed in parallel on the shared worker pool.
+ * Every tile is extended by a halo, the tile and its halo are processed as an
+ * independent image (gradient, structure tensor and features) and only the 
+ * central part of the tile is copied back into the slice. The halo covers the 
+ * support of the gradient and of the Gaussian window of the tensor, so that 
+ * the result is the same as the untiled computation up to the float precision.
+ * 
+ * The Fourier and the Riesz gradients are global operators, they are not tiled.
+ * 
+ * @author Daniel Sage
+ */
+public class TileScheduler {
+
+	/** Relative tolerance used to bound the support of the recursive filters */
+	private static double	tolerance	= 1e-7;
+
+	private GroupImage				gim;
+	private OrientationParameters	params;
+	private LogAbstract				log;
+	private int						halo;
+
+	public TileScheduler(LogAbstract log, GroupImage gim, OrientationParameters params) {
+		this.log = log;
+		this.gim = gim;
+		this.params = params;
+		this.halo = getHalo(params);
+	}
+
+	/**
+	 * Returns true if the slices of the GroupImage should be tiled, i.e. the 
+	 * slices are larger than a tile, the stack has not enough slices to feed
+	 * the worker threads and the gradient is a local operator.
+	 */
+	public static boolean isTiled(GroupImage gim, OrientationParameters params) {
+		if (params.tile <= 0)
+			return false;
+		if (params.gradient == OrientationParameters.GRADIENT_FOURIER_DOMAIN)
+			return false;
+		if (params.gradient == OrientationParameters.GRADIENT_RIESZ)
+			return false;
+		int parallelism = WorkerPool.getParallelism();
+		if (parallelism <= 1 || gim.nt >= parallelism)
+			return false;
+		return gim.nx > params.tile || gim.ny > params.tile;
+	}
+
+	/**
+	 * Returns the size of the halo: support of the gradient, plus support of 
+	 * the Gaussian window of the structure tensor, plus the support of the 
+	 * smoothing of the Harris index.
+	 */
+	public static int getHalo(OrientationParameters params) {
+		int support = 0;
+		if (params.gradient == OrientationParameters.GRADIENT_CUBIC_SPLINE) {
+			double a = Math.sqrt(3.0) - 2.0;
+			support = 2 + (int)Math.ceil(Math.log(tolerance) / Math.log(Math.abs(a)));
+		}
+		else if (params.gradient == OrientationParameters.GRADIENT_FINITE_DIFF)
+			support = 1;
+		else if (params.gradient == OrientationParameters.GRADIENT_GAUSSIAN)
+			support = 4; // window of 4 sigma, sigma = 1
+		else if (params.gradient == OrientationParameters.HESSIAN)
+			support = 2;
+		if (params.gradient != OrientationParameters.GRADIENT_GAUSSIAN && params.sigmaLoG > 0)
+			support += (int)(params.sigmaLoG * 3.0);
+		support += Gaussian.getSupport(params.sigmaST, tolerance);
+		if (params.isServiceHarris())
+			support += 2;
+		return support;
+	}
+
+	/**
+	 * Computes the slice t, tile by tile, in parallel.
+	 */
+	public void run(final int t) {
+		int size = params.tile;
+		final ArrayList<int[]> tiles = new ArrayList<int[]>();
+		for (int y = 0; y < gim.ny; y += size)
+			for (int x = 0; x < gim.nx; x += size)
+				tiles.add(new int[] { x, y, Math.min(size, gim.nx - x), Math.min(size, gim.ny - y) });
+
+		final int n = tiles.size();
+		final AtomicInteger done = new AtomicInteger(0);
+		final Runnable tasks[] = new Runnable[n];
+		for (int i = 0; i < n; i++) {
+			final int tile[] = tiles.get(i);
+			tasks[i] = new Runnable() {
+				@Override
+				public void run() {
+					runTile(t, tile[0], tile[1], tile[2], tile[3]);
+					int k = done.incrementAndGet();
+					synchronized (log) {
+						log.progress("Slice " + (t + 1) + " tile " + k + "/" + n, (t + k / (double) n) * 100.0 / gim.nt);
+					}
+				}
+			};
+		}
+		WorkerPool.invokeAll(tasks);
+	}
+
+	/**
+	 * Computes one tile (x0, y0, w, h) of the slice t, extended by the halo.
+	 */
+	private void runTile(int t, int x0, int y0, int w, int h) {
+		int ex0 = Math.max(0, x0 - halo);
+		int ey0 = Math.max(0, y0 - halo);
+		int ex1 = Math.min(gim.nx, x0 + w + halo);
+		int ey1 = Math.min(gim.ny, y0 + h + halo);
+		
+		GroupImage part = gim.crop(t, ex0, ey0, ex1 - ex0, ey1 - ey0);
+		OrientationProcess.compute(new LogMute(), part, params, 0, gim.getMetrics(), t);
+		
+		gim.insert(part, 0, t, x0 - ex0, y0 - ey0, x0, y0, w, h);
+	}
+}
@@ -0,0 +1,135 @@
+//=============================================================================================================
+//
+// Project: Directional Image Analysis - OrientationJ plugins
+// 
+// Author: Daniel Sage
+// 
+// Organization: Biomedical Imaging Group (BIG)
+// Ecole Polytechnique Federale de Lausanne (EPFL), Lausanne, Switzerland
+//
+// OrientationJ: https://bigwww.epfl.ch/demo/orientation/
+// MonogenicJ: https://bigwww.epfl.ch/demo/monogenic/
+// Source code: https://github.com/Biomedical-Imaging-Group/OrientationJ
+//  
+// Reference on OrientationJ:
+// Z. Püspöki, M. Storath, D. Sage, M. Unser
+// Transforms and Operators for Directional Bioimage Analysis: A Survey 
+// Focus on Bio-Image Informatics, Springer International Publishing, 2016.
+//
+// Reference on MonogenicJ:
+// M. Unser, D. Sage, D. Van De Ville
+// Multiresolution Monogenic Signal Analysis Using the Riesz-Laplace Wavelet Transform
+// IEEE Transactions on Image Processing, 2009.
+//
+// Conditions of use: We expect you to include adequate citations and 
+// acknowledgments whenever you present or publish results that are based on it.
+//
+// License: GNU GPLv3 <http://www.gnu.org/licenses/gpl-3.0.html>
+//=============================================================================================================
+
+package orientation;
+
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Shared pools of worker threads of the OrientationJ pipeline.
+ * 
+ * The number of threads of a run is given by setParallelism(), called on the
+ * thread of the run, by default the number of available processors. The runs
+ * with the same number of threads share the same pool, a pool is created at
+ * the first request and never shut down, so that the runs in progress, in
+ * the GUI, in a macro or in a batch, do not interfere. The tasks run in a 
+ * pool use its number of threads. The workers are daemon threads, they do 
+ * not prevent ImageJ from exiting, and they terminate when there is no work.
+ * 
+ * @author Daniel Sage
+ */
+public class WorkerPool {
+
+	private static final HashMap<Integer, ForkJoinPool>	pools		= new HashMap<Integer, ForkJoinPool>();
+	private static final ThreadLocal<Integer>				parallelism	= new ThreadLocal<Integer>();
+
+	/**
+	 * Returns the pool of the current thread: the pool of the worker which 
+	 * runs it, or the pool of its number of threads, created if it does not 
+	 * exist yet.
+	 */
+	public static ForkJoinPool get() {
+		ForkJoinPool pool = getWorkerPool();
+		if (pool != null)
+			return pool;
+		int n = getParallelism();
+		synchronized (pools) {
+			pool = pools.get(n);
+			if (pool == null) {
+				pool = new ForkJoinPool(n);
+				pools.put(n, pool);
+			}
+			return pool;
+		}
+	}
+
+	/**
+	 * Sets the number of worker threads of the runs of the current thread, 0 
+	 * or negative for all the available processors. The other threads and 
+	 * the runs in progress are not affected.
+	 */
+	public static void setParallelism(int threads) {
+		parallelism.set(threads <= 0 ? Runtime.getRuntime().availableProcessors() : threads);
+	}
+
+	/**
+	 * Returns the number of worker threads of the current thread: the size of
+	 * the pool of the worker which runs it, or the value of setParallelism().
+	 */
+	public static int getParallelism() {
+		ForkJoinPool pool = getWorkerPool();
+		if (pool != null)
+			return pool.getParallelism();
+		Integer n = parallelism.get();
+		return (n == null ? Runtime.getRuntime().availableProcessors() : n);
+	}
+
+	/**
+	 * Returns the pool of the current thread if it is a worker of one of the 
+	 * shared pools, null otherwise.
+	 */
+	private static ForkJoinPool getWorkerPool() {
+		ForkJoinPool pool = ForkJoinTask.getPool();
+		if (pool == null)
+			return null;
+		synchronized (pools) {
+			return (pools.get(pool.getParallelism()) == pool ? pool : null);
+		}
+	}
+
+	/**
+	 * Runs the tasks in the pool of the current thread and returns when all of them are
+	 * completed. The calling thread blocks (or helps when it is itself a 
+	 * worker of the pool) instead of spinning. The tasks are run in the 
+	 * calling thread if the pool has a single worker.
+	 */
+	public static void invokeAll(Runnable... tasks) {
+		if (tasks.length == 1 || getParallelism() == 1) {
+			for (Runnable task : tasks)
+				task.run();
+			return;
+		}
+		final ForkJoinTask<?> jobs[] = new ForkJoinTask<?>[tasks.length];
+		for (int i = 0; i < tasks.length; i++)
+			jobs[i] = ForkJoinTask.adapt(tasks[i]);
+		if (getWorkerPool() != null) {
+			ForkJoinTask.invokeAll(jobs);
+			return;
+		}
+		get().invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(jobs);
+			}
+		});
+	}
+}
@@ -0,0 +1,96 @@
+package orientation.fft;
+
+/**
+ * Class ComplexSignalFloat
+ *
+ * Single precision version of ComplexSignal, the real and the imaginary
+ * parts are stored in two float arrays, 8 bytes per complex sample instead
+ * of 16. The FFT2D transforms it with line buffers in double, the values
+ * are rounded to float between the passes on the rows and on the columns.
+ */
+public class ComplexSignalFloat {
+
+	public float[] real;
+	public float[] imag;
+	public int nx;
+	public int ny;
+
+	/**
+	* Creates an empty Fourier Space of size [nx*ny].
+	*/
+	public ComplexSignalFloat(int nx, int ny) {
+		real = new float[nx*ny];
+		imag = new float[nx*ny];
+		this.nx = nx;
+		this.ny = ny;
+	}
+
+	/**
+	*/
+	public ComplexSignalFloat(float real[], int nx, int ny) {
+		this.real = real;
+		this.nx = nx;
+		this.ny = ny;
+	}
+
+	/**
+	*/
+	public ComplexSignalFloat(float real[], float imag[], int nx, int ny) {
+		this.real = real;
+		this.imag = imag;
+		this.nx = nx;
+		this.ny = ny;
+	}
+
+	/**
+	* Rounds a double precision signal to float.
+	*/
+	public ComplexSignalFloat(ComplexSignal signal) {
+		this(signal.nx, signal.ny);
+		int nxy = nx*ny;
+		for(int k=0; k<nxy; k++) {
+			real[k] = (float)signal.real[k];
+			imag[k] = (float)signal.imag[k];
+		}
+	}
+
+	/**
+	* Complex multiplication operator.
+	*/
+	public static ComplexSignalFloat multiply(ComplexSignalFloat a, ComplexSignalFloat b) {
+		int nx = a.nx;
+		int ny = a.ny;
+		int nxy = nx*ny;
+		ComplexSignalFloat p = new ComplexSignalFloat(nx, ny);
+		for(int k=0; k<nxy; k++) {
+			p.real[k] = a.real[k]*b.real[k] - a.imag[k]*b.imag[k];
+			p.imag[k] = a.real[k]*b.imag[k] + a.imag[k]*b.real[k];
+		}
+		return p;
+	}
+
+	/**
+	* Complex multiplication in place.
+	*/
+	public void multiply(ComplexSignalFloat a) {
+		int nxy = nx*ny;
+		float tmp = 0;
+		for(int k=0; k<nxy; k++) {
+			tmp = a.real[k]*real[k] - a.imag[k]*imag[k];
+			imag[k] = a.real[k]*imag[k] + a.imag[k]*real[k];
+			real[k] = tmp;
+		}
+	}
+
+	/**
+	*/
+	public ComplexSignalFloat conjugate() {
+		int nxy = nx*ny;
+		ComplexSignalFloat out = new ComplexSignalFloat(nx, ny);
+		System.arraycopy(real, 0, out.real, 0, nxy);
+		for(int k=0; k<nxy; k++) {
+			out.imag[k] = -imag[k];
+		}
+		return out;
+	}
+}
@@ -3,13 +3,16 @@ package orientation.fft;
 public class FFT1D {
 
 	private boolean radix2 = true;
+	private boolean bluestein = false;
 	private double Rearg[];
 	private double Imarg[];
 	private double[] yReOut;
 	private double[] yImOut;
+	private int size;
 	 
 	public FFT1D(int size) {
 	
+		this.size = size;
 		int m = 1;
 		int size1 = size;
 		double fact;
@@ -32,9 +35,16 @@ public class FFT1D {
 				Imarg[i] = -Math.sin(arg);
 			}	
 		}
+		else if (isBluesteinFaster(size)) {
+			radix2=false;
+			bluestein=true;
+			n = size;
+			initBluestein(size);
+		}
 		else {
 			radix2=false;
-			maxPrimeFactor = /*65537; */ (int)((double)(size+1));
+			// The working arrays of the stages are sized by the largest radix
+			maxPrimeFactor = Math.max(11, largestPrimeFactor(size)+1);
 			maxPrimeFactorDiv2 =(maxPrimeFactor+1)/2;// (int)((double)(maxPrimeFactor+1)/2);
 
 			twiddleRe = new double[maxPrimeFactor];
@@ -60,7 +70,14 @@ public class FFT1D {
 	}
 
 	/**
-	* Select the algorithm to perform the FFT1D, Cooley-Tukey or Mix.
+	* Returns the length of the transform given to the constructor.
+	*/
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	* Select the algorithm to perform the FFT1D, Cooley-Tukey, Bluestein or Mix.
 	*
 	* @param	Re		real part of the input signal
 	* @param	Im		imaginary part of the input signal
@@ -72,6 +89,9 @@ public class FFT1D {
 		if (radix2) {
 			doFFT1D_CooleyTukey(Re,Im,size,shift);
 		}
+		else if (bluestein) {
+			doFFT_Bluestein(Re, Im, shift);
+		}
 		else {
 			if (shift == 0) 
 				doFFT_Mix(Re, Im, size);
@@ -81,7 +101,7 @@ public class FFT1D {
 	}
 
 	/**
-	* Select the algorithm to perform the Inverse FFT1D, Cooley-Tukey or Mix.
+	* Select the algorithm to perform the Inverse FFT1D, Cooley-Tukey, Bluestein or Mix.
 	*
 	* @param	Re		real part of the input signal
 	* @param	Im		imaginary part of the input signal
@@ -93,6 +113,9 @@ public class FFT1D {
 		if (radix2) {
 			doIFFT1D_CooleyTukey(Re,Im,size,shift);
 		}
+		else if (bluestein) {
+			doIFFT_Bluestein(Re, Im, shift);
+		}
 		else {
 			if (shift == 0) 
 				doIFFT_Mix(Re,Im,size);
@@ -829,4 +852,145 @@ public class FFT1D {
 			xIm[i+shift] = tmp_xIm[i];
 		}
 	}
-} 
+
+	/*
+	* Bluestein's chirp-z algorithm, for the lengths with large prime 
+	* factors. With the chirp w(j) = exp(-i*pi*j^2/n), the DFT is 
+	* X(k) = w(k) * sum_j x(j)*w(j) * conj(w(k-j)), a circular convolution 
+	* computed by radix-2 FFTs of length m >= 2n-1. The FFT of the 
+	* conjugated chirp is computed once per plan.
+	*/
+	private FFT1D fftChirp;
+	private double chirpRe[];
+	private double chirpIm[];
+	private double kernelRe[];
+	private double kernelIm[];
+	private double bufferRe[];
+	private double bufferIm[];
+
+	/**
+	* Returns true if the chirp-z transform is expected to be faster than
+	* the mixed-radix transform for this length.
+	*
+	* The cost model counts the complex operations: the mixed-radix stages
+	* cost about n*p for a prime factor p larger than 5, and n*4 for the
+	* other radices, the chirp-z costs two radix-2 FFTs of length m and 
+	* the chirp multiplications.
+	*/
+	public static boolean isBluesteinFaster(int size) {
+		if (size < 64)
+			return false;
+		double mixed = 0.0;
+		int num = size;
+		for (int p=2; p<=num; p++) {
+			if (p*p > num)
+				p = num;
+			while (num % p == 0) {
+				num /= p;
+				mixed += (p > 5 ? p : 4);
+			}
+		}
+		mixed *= size;
+		int m = getBluesteinLength(size);
+		int log = Integer.numberOfTrailingZeros(m);
+		double chirp = 2.0 * m * log + 2.0 * m + 2.0 * size;
+		return mixed > BLUESTEIN_RATIO * chirp;
+	}
+
+	/** Ratio of the measured cost of the mixed-radix to the chirp-z per operation */
+	private static final double BLUESTEIN_RATIO = 2.5;
+
+	/**
+	* Returns the length of the radix-2 FFTs of the chirp-z transform.
+	*/
+	private static int getBluesteinLength(int size) {
+		int m = 1;
+		while (m < 2*size-1)
+			m <<= 1;
+		return m;
+	}
+
+	/**
+	* Returns the largest prime factor of n.
+	*/
+	private static int largestPrimeFactor(int num) {
+		int largest = 1;
+		for (int p=2; p<=num; p++) {
+			if (p*p > num)
+				p = num;
+			while (num % p == 0) {
+				num /= p;
+				largest = p;
+			}
+		}
+		return largest;
+	}
+
+	private void initBluestein(int size) {
+		int m = getBluesteinLength(size);
+		fftChirp = new FFT1D(m);
+		chirpRe = new double[size];
+		chirpIm = new double[size];
+		for (int j=0; j<size; j++) {
+			// j^2 mod 2n keeps the argument of the chirp accurate for large j
+			double arg = Math.PI * (double)(((long)j * j) % (2L * size)) / size;
+			chirpRe[j] = Math.cos(arg);
+			chirpIm[j] = -Math.sin(arg);
+		}
+		kernelRe = new double[m];
+		kernelIm = new double[m];
+		kernelRe[0] = chirpRe[0];
+		kernelIm[0] = -chirpIm[0];
+		for (int j=1; j<size; j++) {
+			kernelRe[j] = kernelRe[m-j] = chirpRe[j];
+			kernelIm[j] = kernelIm[m-j] = -chirpIm[j];
+		}
+		fftChirp.transform(kernelRe, kernelIm, m, 0);
+		bufferRe = new double[m];
+		bufferIm = new double[m];
+	}
+
+	/**
+	* Perform the FFT by the chirp-z algorithm.
+	*/
+	private void doFFT_Bluestein(double xRe[], double xIm[], int shift) {
+		int m = bufferRe.length;
+		for (int j=0; j<n; j++) {
+			double re = xRe[j+shift];
+			double im = xIm[j+shift];
+			bufferRe[j] = re * chirpRe[j] - im * chirpIm[j];
+			bufferIm[j] = re * chirpIm[j] + im * chirpRe[j];
+		}
+		for (int j=n; j<m; j++) {
+			bufferRe[j] = 0.0;
+			bufferIm[j] = 0.0;
+		}
+		fftChirp.transform(bufferRe, bufferIm, m, 0);
+		for (int j=0; j<m; j++) {
+			double re = bufferRe[j];
+			double im = bufferIm[j];
+			bufferRe[j] = re * kernelRe[j] - im * kernelIm[j];
+			bufferIm[j] = re * kernelIm[j] + im * kernelRe[j];
+		}
+		fftChirp.inverse(bufferRe, bufferIm, m, 0);
+		for (int k=0; k<n; k++) {
+			double re = bufferRe[k];
+			double im = bufferIm[k];
+			xRe[k+shift] = re * chirpRe[k] - im * chirpIm[k];
+			xIm[k+shift] = re * chirpIm[k] + im * chirpRe[k];
+		}
+	}
+
+	/**
+	* Perform the IFFT by the chirp-z algorithm.
+	*/
+	private void doIFFT_Bluestein(double xRe[], double xIm[], int shift) {
+		for (int i=shift; i<shift+n; i++)
+			xIm[i] = -xIm[i];
+		doFFT_Bluestein(xRe, xIm, shift);
+		for (int i=shift; i<shift+n; i++) {
+			xRe[i] = xRe[i]/n;
+			xIm[i] = -xIm[i]/n;
+		}
+	}
+}
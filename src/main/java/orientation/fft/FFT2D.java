@@ -1,11 +1,28 @@
 package orientation.fft;
 
+import orientation.WorkerPool;
+
 /**
  * FFT2D
+ *
+ * The rows and the columns are transformed by bands run in the shared
+ * WorkerPool, each band with its own FFT1D plan taken from the FFTCache.
+ * The columns are gathered and scattered by blocks of BLOCK columns,
+ * reading BLOCK consecutive values of a row at a time instead of one
+ * value per row. The result does not depend on the number of threads.
+ *
+ * The ComplexSignalFloat are transformed with the same double line 
+ * buffers and FFT1D plans, only the storage is in single precision.
  */
 
 public class FFT2D {
-	
+
+	/** Number of columns gathered together */
+	private static final int BLOCK = 16;
+
+	/** Minimal number of rows or columns of a band run in parallel */
+	private static final int MIN_BAND = 32;
+
 	/**
 	* Perform the FFT 2D.
 	*/
@@ -13,39 +30,107 @@ public class FFT2D {
 		int nx = in.nx;
 		int ny = in.ny;
 		ComplexSignal fourier = new ComplexSignal(nx, ny);		// real and imag
-		double colReal[] = new double[ny];
-		double colImag[] = new double[ny];
-		FFT1D ffty = new FFT1D(ny);
-		
-		for (int x=0; x<nx; x++) {
-
-			getY(x, in.real, colReal);
-			if (in.imag == null)
-				for(int i=0; i<ny; i++) colImag[i] = 0.0;
-			else
-				getY(x, in.imag, colImag);
-			ffty.transform(colReal, colImag, ny, 0);
-			putY(x, fourier.real, colReal);
-			putY(x, fourier.imag, colImag);
+		System.arraycopy(in.real, 0, fourier.real, 0, nx*ny);
+		if (in.imag != null)
+			System.arraycopy(in.imag, 0, fourier.imag, 0, nx*ny);
+		columns(fourier.real, fourier.imag, nx, ny, false);
+		rows(fourier.real, fourier.imag, nx, ny, false);
+		return fourier;
+	}
 
-		}
-	
-		double rowReal[] = new double[nx];
-		double rowImag[] = new double[nx];
-		
-		FFT1D fftx = new FFT1D(nx);
-
-		for (int y=0; y<ny; y++) {
-
-			getX(y, fourier.real, rowReal);	
-			getX(y, fourier.imag, rowImag);
-			fftx.transform(rowReal, rowImag, nx, 0);
-			putX(y, fourier.real, rowReal);	
-			putX(y, fourier.imag, rowImag);
-		}
+	/**
+	* Perform the FFT 2D in single precision.
+	*/
+	public static ComplexSignalFloat transform(ComplexSignalFloat in) {
+		int nx = in.nx;
+		int ny = in.ny;
+		ComplexSignalFloat fourier = new ComplexSignalFloat(nx, ny);
+		System.arraycopy(in.real, 0, fourier.real, 0, nx*ny);
+		if (in.imag != null)
+			System.arraycopy(in.imag, 0, fourier.imag, 0, nx*ny);
+		columns(fourier.real, fourier.imag, nx, ny, false);
+		rows(fourier.real, fourier.imag, nx, ny, false);
 		return fourier;
 	}
 
+	/**
+	* Perform the FFT 2D of a real signal of size [nx*ny].
+	*
+	* The spectrum of a real signal has the Hermitian symmetry
+	* F(nx-u, ny-v) = conj(F(u, v)), only the half spectrum of size
+	* [(nx/2+1)*ny] is returned. The rows are transformed by pairs, packed
+	* in one complex FFT, and only the nx/2+1 columns of the half spectrum
+	* are transformed, about the half of the work of the complex FFT 2D.
+	*/
+	public static ComplexSignal transformReal(double in[], int nx, int ny) {
+		ComplexSignal fourier = new ComplexSignal(nx/2 + 1, ny);
+		transformReal(in, null, fourier.real, fourier.imag, null, null, nx, ny);
+		return fourier;
+	}
+
+	/**
+	* Perform the FFT 2D of a real signal of size [nx*ny] in single
+	* precision, returns the half spectrum of size [(nx/2+1)*ny].
+	*/
+	public static ComplexSignalFloat transformReal(float in[], int nx, int ny) {
+		ComplexSignalFloat fourier = new ComplexSignalFloat(nx/2 + 1, ny);
+		transformReal(null, in, null, null, fourier.real, fourier.imag, nx, ny);
+		return fourier;
+	}
+
+	/**
+	* Computes the half spectrum of the double input in the double arrays, 
+	* or of the float input in the float arrays if the double ones are null.
+	*/
+	private static void transformReal(final double in[], final float fin[], final double real[], final double imag[], 
+			final float freal[], final float fimag[], final int nx, final int ny) {
+		final int hx = nx/2 + 1;
+		final int bands[] = getBands((ny+1)/2);
+		Runnable tasks[] = new Runnable[bands.length-1];
+		for (int i=0; i<tasks.length; i++) {
+			final int p0 = bands[i];
+			final int p1 = bands[i+1];
+			tasks[i] = new Runnable() {
+				@Override
+				public void run() {
+					double rowReal[] = new double[nx];
+					double rowImag[] = new double[nx];
+					double halfReal[] = new double[hx];
+					double halfImag[] = new double[hx];
+					FFT1D fftx = FFTCache.acquire(nx);
+					for (int y=2*p0; y<2*p1 && y<ny; y+=2) {
+						getRow(y, in, fin, rowReal);
+						if (y+1 < ny)
+							getRow(y+1, in, fin, rowImag);
+						else
+							for(int i=0; i<nx; i++) rowImag[i] = 0.0;
+						fftx.transform(rowReal, rowImag, nx, 0);
+						// Split Z = A + iB: A(u) = (Z(u) + conj(Z(-u)))/2, B(u) = (Z(u) - conj(Z(-u)))/2i
+						for (int u=0; u<hx; u++) {
+							int m = (u == 0 ? 0 : nx-u);
+							halfReal[u] = 0.5 * (rowReal[u] + rowReal[m]);
+							halfImag[u] = 0.5 * (rowImag[u] - rowImag[m]);
+						}
+						putRow(y, real, freal, halfReal);
+						putRow(y, imag, fimag, halfImag);
+						if (y+1 < ny) {
+							for (int u=0; u<hx; u++) {
+								int m = (u == 0 ? 0 : nx-u);
+								halfReal[u] = 0.5 * (rowImag[u] + rowImag[m]);
+								halfImag[u] = 0.5 * (rowReal[m] - rowReal[u]);
+							}
+							putRow(y+1, real, freal, halfReal);
+							putRow(y+1, imag, fimag, halfImag);
+						}
+					}
+					FFTCache.release(fftx);
+				}
+			};
+		}
+		WorkerPool.invokeAll(tasks);
+		columns(real, imag, freal, fimag, hx, ny, false);
+	}
+
 	/**
 	* Perform the inverse FFT 2D.
 	*/
@@ -53,38 +138,154 @@ public class FFT2D {
 
 		int nx = fourier.nx;
 		int ny = fourier.ny;
-		ComplexSignal out = new ComplexSignal(nx, ny);	
-		double colReal[] = new double[ny];
-		double colImag[] = new double[ny];
-
-		FFT1D ffty = new FFT1D(ny);
-		for (int x=0; x<nx; x++) {
-			getY(x, fourier.real, colReal);	
-			getY(x, fourier.imag, colImag);
-			ffty.inverse(colReal, colImag, ny, 0);
-			putY(x, out.real, colReal);	
-			putY(x, out.imag, colImag);
+		ComplexSignal out = new ComplexSignal(nx, ny);
+		System.arraycopy(fourier.real, 0, out.real, 0, nx*ny);
+		System.arraycopy(fourier.imag, 0, out.imag, 0, nx*ny);
+		columns(out.real, out.imag, nx, ny, true);
+		rows(out.real, out.imag, nx, ny, true);
+		return out;
+	}
+
+	/**
+	* Perform the inverse FFT 2D in single precision.
+	*/
+	public static ComplexSignalFloat inverse(ComplexSignalFloat fourier) {
+		int nx = fourier.nx;
+		int ny = fourier.ny;
+		ComplexSignalFloat out = new ComplexSignalFloat(nx, ny);
+		System.arraycopy(fourier.real, 0, out.real, 0, nx*ny);
+		System.arraycopy(fourier.imag, 0, out.imag, 0, nx*ny);
+		columns(out.real, out.imag, nx, ny, true);
+		rows(out.real, out.imag, nx, ny, true);
+		return out;
+	}
+
+	/**
+	* Transforms in place the ny rows of length nx, by bands of rows.
+	*/
+	public static void rows(double real[], double imag[], int nx, int ny, boolean inverse) {
+		rows(real, imag, null, null, nx, ny, inverse);
+	}
+
+	/**
+	* Transforms in place the ny rows of length nx, stored in float.
+	*/
+	public static void rows(float real[], float imag[], int nx, int ny, boolean inverse) {
+		rows(null, null, real, imag, nx, ny, inverse);
+	}
+
+	/**
+	* Transforms the rows of the double arrays, or of the float arrays if
+	* the double arrays are null.
+	*/
+	private static void rows(final double real[], final double imag[], final float freal[], final float fimag[], 
+			final int nx, final int ny, final boolean inverse) {
+		final int bands[] = getBands(ny);
+		Runnable tasks[] = new Runnable[bands.length-1];
+		for (int i=0; i<tasks.length; i++) {
+			final int y0 = bands[i];
+			final int y1 = bands[i+1];
+			tasks[i] = new Runnable() {
+				@Override
+				public void run() {
+					double rowReal[] = new double[nx];
+					double rowImag[] = new double[nx];
+					FFT1D fftx = FFTCache.acquire(nx);
+					for (int y=y0; y<y1; y++) {
+						getRow(y, real, freal, rowReal);
+						getRow(y, imag, fimag, rowImag);
+						if (inverse)
+							fftx.inverse(rowReal, rowImag, nx, 0);
+						else
+							fftx.transform(rowReal, rowImag, nx, 0);
+						putRow(y, real, freal, rowReal);
+						putRow(y, imag, fimag, rowImag);
+					}
+					FFTCache.release(fftx);
+				}
+			};
 		}
-	
-		double rowReal[] = new double[nx];
-		double rowImag[] = new double[nx];
-		FFT1D fftx = new FFT1D(nx);
-		for (int y=0; y<ny; y++) {
-			getX(y, out.real, rowReal);	
-			getX(y, out.imag, rowImag);
-			fftx.inverse(rowReal, rowImag, nx, 0);
-			putX(y, out.real, rowReal);	
-			putX(y, out.imag, rowImag);
+		WorkerPool.invokeAll(tasks);
+	}
+
+	/**
+	* Transforms in place the nx columns of length ny, by bands of columns.
+	*/
+	public static void columns(double real[], double imag[], int nx, int ny, boolean inverse) {
+		columns(real, imag, null, null, nx, ny, inverse);
+	}
+
+	/**
+	* Transforms in place the nx columns of length ny, stored in float.
+	*/
+	public static void columns(float real[], float imag[], int nx, int ny, boolean inverse) {
+		columns(null, null, real, imag, nx, ny, inverse);
+	}
+
+	/**
+	* Transforms the columns of the double arrays, or of the float arrays
+	* if the double arrays are null.
+	*/
+	private static void columns(final double real[], final double imag[], final float freal[], final float fimag[], 
+			final int nx, final int ny, final boolean inverse) {
+		final int bands[] = getBands(nx);
+		Runnable tasks[] = new Runnable[bands.length-1];
+		for (int i=0; i<tasks.length; i++) {
+			final int x0 = bands[i];
+			final int x1 = bands[i+1];
+			tasks[i] = new Runnable() {
+				@Override
+				public void run() {
+					double colReal[][] = new double[BLOCK][ny];
+					double colImag[][] = new double[BLOCK][ny];
+					FFT1D ffty = FFTCache.acquire(ny);
+					for (int x=x0; x<x1; x+=BLOCK) {
+						int n = Math.min(BLOCK, x1-x);
+						getBlock(x, n, nx, real, freal, colReal);
+						getBlock(x, n, nx, imag, fimag, colImag);
+						for (int c=0; c<n; c++)
+							if (inverse)
+								ffty.inverse(colReal[c], colImag[c], ny, 0);
+							else
+								ffty.transform(colReal[c], colImag[c], ny, 0);
+						putBlock(x, n, nx, real, freal, colReal);
+						putBlock(x, n, nx, imag, fimag, colImag);
+					}
+					FFTCache.release(ffty);
+				}
+			};
 		}
-		return out;
+		WorkerPool.invokeAll(tasks);
 	}
-	
-	
-	private static void getY(int x, double in[], double col[]) {
-		int ny = col.length;
-		int nx = in.length / ny;
+
+	/**
+	* Returns the limits of the bands of the n rows or columns run in
+	* parallel, the band i covers the lines bands[i] to bands[i+1]-1.
+	*/
+	private static int[] getBands(int n) {
+		int count = Math.max(1, Math.min(WorkerPool.getParallelism(), n / MIN_BAND));
+		int bands[] = new int[count + 1];
+		for (int i = 0; i <= count; i++)
+			bands[i] = (int)((long)i * n / count);
+		return bands;
+	}
+
+	/**
+	* Copies the n columns starting at x of a signal of width nx into cols,
+	* row by row.
+	*/
+	private static void getBlock(int x, int n, int nx, double in[], double cols[][]) {
+		int ny = cols[0].length;
 		for(int j=0, k=x; j<ny; j++, k+=nx)
-			col[j] = in[k];
+			for(int c=0; c<n; c++)
+				cols[c][j] = in[k+c];
+	}
+
+	private static void getBlock(int x, int n, int nx, float in[], double cols[][]) {
+		int ny = cols[0].length;
+		for(int j=0, k=x; j<ny; j++, k+=nx)
+			for(int c=0; c<n; c++)
+				cols[c][j] = in[k+c];
 	}
 
 	private static void getX(int y, double in[], double row[]) {
@@ -92,17 +293,68 @@ public class FFT2D {
 		System.arraycopy(in, y*nx, row, 0, nx);
 	}
 
-	private static void putY(int x, double in[], double col[]) {
-		int ny = col.length;
-		int nx = in.length / ny;
+	private static void getX(int y, float in[], double row[]) {
+		int nx = row.length;
+		for(int i=0, k=y*nx; i<nx; i++, k++)
+			row[i] = in[k];
+	}
+
+	/**
+	* Copies the n columns of cols into the columns starting at x of a
+	* signal of width nx, row by row.
+	*/
+	private static void putBlock(int x, int n, int nx, double in[], double cols[][]) {
+		int ny = cols[0].length;
 		for(int j=0, k=x; j<ny; j++, k+=nx)
-			in[k] = col[j];
+			for(int c=0; c<n; c++)
+				in[k+c] = cols[c][j];
+	}
+
+	private static void putBlock(int x, int n, int nx, float in[], double cols[][]) {
+		int ny = cols[0].length;
+		for(int j=0, k=x; j<ny; j++, k+=nx)
+			for(int c=0; c<n; c++)
+				in[k+c] = (float)cols[c][j];
 	}
 
 	private static void putX(int y, double in[], double row[]) {
 		int nx = row.length;
 		System.arraycopy(row, 0, in, y*nx, nx);
 	}
-	
 
-}
\ No newline at end of file
+	private static void putX(int y, float in[], double row[]) {
+		int nx = row.length;
+		for(int i=0, k=y*nx; i<nx; i++, k++)
+			in[k] = (float)row[i];
+	}
+
+	private static void getBlock(int x, int n, int nx, double in[], float fin[], double cols[][]) {
+		if (in != null)
+			getBlock(x, n, nx, in, cols);
+		else
+			getBlock(x, n, nx, fin, cols);
+	}
+
+	private static void putBlock(int x, int n, int nx, double out[], float fout[], double cols[][]) {
+		if (out != null)
+			putBlock(x, n, nx, out, cols);
+		else
+			putBlock(x, n, nx, fout, cols);
+	}
+
+	private static void getRow(int y, double in[], float fin[], double row[]) {
+		if (in != null)
+			getX(y, in, row);
+		else
+			getX(y, fin, row);
+	}
+
+	private static void putRow(int y, double out[], float fout[], double row[]) {
+		if (out != null)
+			putX(y, out, row);
+		else
+			putX(y, fout, row);
+	}
+
+
+}
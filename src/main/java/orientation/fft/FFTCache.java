@@ -0,0 +1,67 @@
+package orientation.fft;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the FFT1D plans, keyed by the length of the transform.
+ *
+ * A plan holds the twiddle factors and the mixed-radix tables of a length,
+ * and its working arrays, it is used by one thread at a time: acquire()
+ * returns an idle plan of the length, or a new one, and release() gives it
+ * back to the cache. The forward and the inverse transforms share the same
+ * plan. The cache is bounded, the lengths least recently used are evicted.
+ */
+public class FFTCache {
+
+	/** Maximal number of lengths kept in the cache */
+	private static final int MAX_LENGTHS = 16;
+
+	/** Maximal number of idle plans kept per length */
+	private static final int MAX_PLANS = Runtime.getRuntime().availableProcessors() + 1;
+
+	private static final LinkedHashMap<Integer, ArrayDeque<FFT1D>> plans =
+		new LinkedHashMap<Integer, ArrayDeque<FFT1D>>(MAX_LENGTHS, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, ArrayDeque<FFT1D>> eldest) {
+				return size() > MAX_LENGTHS;
+			}
+		};
+
+	/**
+	 * Returns a plan of the length size, to be released after use.
+	 */
+	public static FFT1D acquire(int size) {
+		synchronized (plans) {
+			ArrayDeque<FFT1D> idle = plans.get(size);
+			if (idle != null && !idle.isEmpty())
+				return idle.pop();
+		}
+		return new FFT1D(size);
+	}
+
+	/**
+	 * Gives back to the cache a plan returned by acquire().
+	 */
+	public static void release(FFT1D fft) {
+		synchronized (plans) {
+			ArrayDeque<FFT1D> idle = plans.get(fft.getSize());
+			if (idle == null) {
+				idle = new ArrayDeque<FFT1D>();
+				plans.put(fft.getSize(), idle);
+			}
+			if (idle.size() < MAX_PLANS)
+				idle.push(fft);
+		}
+	}
+
+	/**
+	 * Empties the cache.
+	 */
+	public static void clear() {
+		synchronized (plans) {
+			plans.clear();
+		}
+	}
+}
@@ -30,108 +30,156 @@
 package orientation.filters;
 
 import orientation.LogAbstract;
+import orientation.ProcessMetrics;
+import orientation.WorkerPool;
+import orientation.imageware.RecursiveGaussian;
 
 /**
 * Gaussian class.
-* Implementation of the Gaussian filter as a cascade of 3 exponential filters. 
+* Implementation of the Gaussian filter as a cascade of exponential filters. 
 * The boundary conditions are mirroring.
+* The signal is a flat row-major array of nx*ny pixels, filtered in place.
+* Several co-registered signals (channels) can be filtered in one sweep.
 * Thread or directly by calling the run()
 */
 public class Gaussian implements Runnable {
 
-	private double signal[][];
+	/** Number of exponential filters in cascade */
+	private static final int N = 9;
+	
+	/** Minimal number of rows or columns of a band run in parallel */
+	private static final int MIN_BAND = 64;
+	
+	/** Number of columns filtered together by RecursiveGaussian */
+	private static final int BLOCK = 16;
+	
+	private double channels[][];
+	private float fchannels[][];
 	private double sigma;
 	private int nx;
 	private int ny;
 	private LogAbstract log;
 	private double wrange;
+	private ProcessMetrics.Probe probe = null;
 	
 	/**
 	* Constructor based on the signal.
 	*/
-	public Gaussian(LogAbstract log, double wrange, double signal[][], double sigma, int nx, int ny) {
+	public Gaussian(LogAbstract log, double wrange, double signal[], double sigma, int nx, int ny) {
+		this(log, wrange, new double[][] {signal}, sigma, nx, ny);
+	}
+	
+	/**
+	* Constructor based on a float signal, the slice of an imageware.
+	*/
+	public Gaussian(LogAbstract log, double wrange, float signal[], double sigma, int nx, int ny) {
+		this(log, wrange, new float[][] {signal}, sigma, nx, ny);
+	}
+	
+	/**
+	* Constructor based on several signals of the same size, channels[c] 
+	* is the flat array of the channel c.
+	*/
+	public Gaussian(LogAbstract log, double wrange, double channels[][], double sigma, int nx, int ny) {
 		this.log = log;
 		this.wrange = wrange;
-		this.signal = signal;
+		this.channels = channels;
 		this.sigma = sigma;
 		this.nx = nx;
 		this.ny = ny;
 	}
 	
-	@Override
-	public void run() {
-		double s2 = sigma * sigma;
-		double pole = 1.0 + (3.0/s2) - (Math.sqrt(9.0+6.0*s2)/s2);
-	
-		for (int x=0; x<nx; x++) {
-			signal[x] = convolveIIR_TriplePole(signal[x], pole);
-		}
-
-		double row[]  = new double[nx];
-		for(int y=0; y<ny; y++) {
-			log.increment(wrange/ny);
-			for (int x=0; x<nx; x++)
-				row[x] = signal[x][y];
-			row = convolveIIR_TriplePole(row, pole);
-			for (int x=0; x<nx; x++)
-				signal[x][y] = row[x];
-		}
+	/**
+	* Constructor based on several float signals of the same size.
+	*/
+	public Gaussian(LogAbstract log, double wrange, float channels[][], double sigma, int nx, int ny) {
+		this.log = log;
+		this.wrange = wrange;
+		this.fchannels = channels;
+		this.sigma = sigma;
+		this.nx = nx;
+		this.ny = ny;
 	}
-
+	
 	/**
-	* Convolve with with a Infinite Impulse Response filter (IIR)
+	* Measures the passes run in the worker pool as part of a stage.
 	*/
-	private double[] convolveIIR_TriplePole(double[] signal, double pole) {
-		int l = signal.length;
-		int N = 9;
-		double lambda = 1.0;
-		double[] output = new double[l];
-		for (int k=0; k<N; k++) {
-			lambda = lambda * (1.0 - pole) * (1.0 - 1.0 / pole);
-		}
-		for (int n=0; n<l; n++) {
-			output[n] = signal[n] * lambda;
-		}
-		for (int k=0; k<N; k++) {
-			output[0] = getInitialCausalCoefficientMirror(output, pole);
-			for (int n=1; n<l ; n++) {
-				output[n] = output[n] + pole * output[n - 1];
-			}
-			output[l-1] = getInitialAntiCausalCoefficientMirror(output, pole);
-			for (int n=l-2; 0 <= n; n--) {
-				output[n] = pole * (output[n+1] - output[n]);
-			}
-		}
-		return output;
+	public void setProbe(ProcessMetrics.Probe probe) {
+		this.probe = probe;
 	}
-
+	
 	/**
-	* Initial conditions
+	* Filters the columns and then the rows. Every pass is split in bands 
+	* of columns or of rows run in parallel in the shared WorkerPool. The 
+	* rows and the columns are filtered independently, the result does not 
+	* depend on the number of threads.
 	*/
-	private double getInitialAntiCausalCoefficientMirror(double[] c, double z) {
-		return((z * c[c.length - 2] + c[c.length - 1]) * z / (z * z - 1.0));
+	@Override
+	public void run() {
+		final RecursiveGaussian gaussian = new RecursiveGaussian(RecursiveGaussian.getPole(sigma), N);
+		int threads = WorkerPool.getParallelism();
+		
+		// Bands of columns, aligned on the blocks of the vertical pass
+		int n = Math.max(1, Math.min(threads, nx / MIN_BAND));
+		Runnable columns[] = new Runnable[n];
+		for (int i = 0; i < n; i++) {
+			final int x0 = (i == 0 ? 0 : ((i * nx / n) / BLOCK) * BLOCK);
+			final int x1 = (i == n-1 ? nx : (((i+1) * nx / n) / BLOCK) * BLOCK);
+			columns[i] = new Runnable() {
+				@Override
+				public void run() {
+					if (channels != null)
+						gaussian.filterY(channels, nx, ny, x0, x1);
+					else
+						gaussian.filterY(fchannels, nx, ny, x0, x1);
+				}
+			};
+		}
+		WorkerPool.invokeAll(ProcessMetrics.measure(probe, columns));
+		log.increment(wrange * 0.5);
+		
+		// Bands of rows
+		n = Math.max(1, Math.min(threads, ny / MIN_BAND));
+		Runnable rows[] = new Runnable[n];
+		for (int i = 0; i < n; i++) {
+			final int y0 = i * ny / n;
+			final int y1 = (i+1) * ny / n;
+			rows[i] = new Runnable() {
+				@Override
+				public void run() {
+					if (channels != null)
+						gaussian.filterX(channels, nx, y0, y1);
+					else
+						gaussian.filterX(fchannels, nx, y0, y1);
+				}
+			};
+		}
+		WorkerPool.invokeAll(ProcessMetrics.measure(probe, rows));
+		log.increment(wrange * 0.5);
 	}
 
 	/**
-	* Initial conditions
+	* Returns the half-size of the support of the filter, the distance to the 
+	* center beyond which the impulse response is lower than the tolerance 
+	* relatively to its central value.
 	*/
-	private double getInitialCausalCoefficientMirror(double[] c, double z) {
-		double tolerance = 10e-6;
-		double z1 = z, zn = Math.pow(z, c.length - 1);
-		double sum = c[0] + zn * c[c.length - 1];
-		int horizon = c.length;
-
-		if (tolerance > 0.0 ) {
-			horizon = 2 + (int)(Math.log(tolerance) / Math.log(Math.abs(z)));
-			horizon = (horizon < c.length) ? (horizon) : (c.length);
-		}
-		zn = zn * zn;
-		for (int n=1; n<horizon-1; n++) {
-			zn = zn / z;
-			sum = sum + (z1 + zn) * c[n];
-			z1 = z1 * z;
+	public static int getSupport(double sigma, double tolerance) {
+		if (sigma <= 0)
+			return 0;
+		double pole = RecursiveGaussian.getPole(sigma);
+		int half = (int)Math.ceil(10.0 * sigma) + 10;
+		while (true) {
+			double response[] = new double[2*half+1];
+			response[half] = 1.0;
+			new RecursiveGaussian(pole, N).filterX(response, 2*half+1, 1);
+			double threshold = tolerance * response[half];
+			if (Math.abs(response[2*half]) < threshold) {
+				int k = half;
+				while (k > 0 && Math.abs(response[half+k]) < threshold)
+					k--;
+				return k + 1;
+			}
+			half *= 2;
 		}
-		return (sum / (1.0 - Math.pow(z, 2 * c.length - 2)));
 	}
-	
-}
\ No newline at end of file
+}
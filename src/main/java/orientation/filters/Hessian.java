@@ -29,12 +29,33 @@
 
 package orientation.filters;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import orientation.GroupImage;
 import orientation.LogAbstract;
 import orientation.OrientationParameters;
+import orientation.WorkerPool;
 
+/**
+ * Hessian of the slices of the source, the 3 second derivatives are 
+ * computed by separable 3-taps filters with mirror boundary conditions: 
+ * hxx by {1, -2, 1}/6 in Y and {1, 4, 1} in X, hyy by {1, 4, 1} in Y and
+ * {1, -2, 1}/6 in X, hxy by {1, 0, -1}/2 in Y and in X.
+ * 
+ * The 3 filters are fused in one pass over the flat arrays of the slice, 
+ * split in bands of rows run in the shared WorkerPool. The result of the 
+ * Y filter is rounded to float before the X filter, as when it was stored 
+ * in the maps between the two passes.
+ */
 public class Hessian implements Runnable {
 
+	/** Minimal number of rows of a band run in parallel */
+	private static final int MIN_BAND = 64;
+
+	private static final double SECOND[]	= {1.0/6.0, -2.0/6.0, 1.0/6.0};
+	private static final double SMOOTH[]	= {1.0, 4.0, 1.0};
+	private static final double FIRST[]		= {1.0/2.0, 0, -1.0/2.0};
+
 	private GroupImage gim;
 	private LogAbstract log;
 	
@@ -43,99 +64,101 @@ public class Hessian implements Runnable {
 		this.gim = gim;
 	}
 	
+	/**
+	 * Computes the Hessian of all the slices, run in parallel in the shared
+	 * WorkerPool.
+	 */
 	@Override
 	public void run() {
 		log.reset();
-		for(int t=0; t<gim.nt; t++) {
-			log.progress("Hessian", (t+1)*100.0/gim.nt);
-			hessianXX(gim, t);
-			hessianYY(gim, t);
-			hessianXY(gim, t);
-		}
-	}
-	
-	private void hessianXX(GroupImage gim, int t) {
-		int nx = gim.nx;
-		int ny = gim.ny;
-		double kernelX[] = {1.0/6.0, -2.0/6.0, 1.0/6.0};
-		double kernelY[] = {1.0, 4, 1.0};
-
-		double colin[] = new double[ny];
-		double colou[] = new double[ny];
-		for(int x=0; x<nx; x++) {
-			gim.source.getY(x, 0, t, colin);
-			convolve3taps(colin, colou, kernelX);
-			gim.hxx.putY(x, 0, t, colou);
-		}
-		
-		double rowin[] = new double[nx];
-		double rowou[] = new double[nx];
-		for(int y=0; y<ny; y++) {
-			gim.hxx.getX(0, y, t, rowin);
-			convolve3taps(rowin, rowou, kernelY);
-			gim.hxx.putX(0, y, t, rowou);
+		final int nt = gim.nt;
+		final AtomicInteger done = new AtomicInteger(0);
+		Runnable slices[] = new Runnable[nt];
+		for(int t=0; t<nt; t++) {
+			final int slice = t;
+			slices[t] = new Runnable() {
+				@Override
+				public void run() {
+					Hessian.this.run(slice);
+					int n = done.incrementAndGet();
+					synchronized (log) {
+						log.progress("Hessian", n*100.0/nt);
+					}
+				}
+			};
 		}
+		WorkerPool.invokeAll(slices);
 	}
 	
-	private void hessianXY(GroupImage gim, int t) {
-		int nx = gim.nx;
-		int ny = gim.ny;
-		double kernelX[] = {1.0/2.0, 0, -1.0/2.0};
-		double kernelY[] = {1.0/2.0, 0, -1.0/2.0};
-
-		double colin[] = new double[ny];
-		double colou[] = new double[ny];
-		for(int x=0; x<nx; x++) {
-			gim.source.getY(x, 0, 0, colin);
-			convolve3taps(colin, colou, kernelX);
-			gim.hxy.putY(x, 0, 0, colou);
-		}
-		
-		double rowin[] = new double[nx];
-		double rowou[] = new double[nx];
+	/**
+	 * Computes the Hessian of the slice t only. 
+	 * 
+	 * The slices are independent, this method could be called concurrently 
+	 * on different slices.
+	 */
+	public void run(int t) {
+		final int nx = gim.nx;
+		final int ny = gim.ny;
+		final float in[] = new float[nx*ny];
+		float row[] = new float[nx];
 		for(int y=0; y<ny; y++) {
-			gim.hxy.getX(0, y, t, rowin);
-			convolve3taps(rowin, rowou, kernelY);
-			gim.hxy.putX(0, y, t, rowou);
+			gim.source.getX(0, y, t, row);
+			System.arraycopy(row, 0, in, y*nx, nx);
 		}
-	}
-	
-	private void hessianYY(GroupImage gim, int t) {
-		int nx = gim.nx;
-		int ny = gim.ny;
-		double kernelX[] = {1.0, 4.0, 1.0};
-		double kernelY[] = {1.0/6.0, -2.0/6.0, 1.0/6.0};
+		final float hxx[] = gim.hxx.getSliceFloat(t);
+		final float hyy[] = gim.hyy.getSliceFloat(t);
+		final float hxy[] = gim.hxy.getSliceFloat(t);
 
-		double colin[] = new double[ny];
-		double colou[] = new double[ny];
-		for(int x=0; x<nx; x++) {
-			gim.source.getY(x, 0, t, colin);
-			convolve3taps(colin, colou, kernelX);
-			gim.hyy.putY(x, 0, t, colou);
-		}
-		
-		double rowin[] = new double[nx];
-		double rowou[] = new double[nx];
-		for(int y=0; y<ny; y++) {
-			gim.hyy.getX(0, y, t, rowin);
-			convolve3taps(rowin, rowou, kernelY);
-			gim.hyy.putX(0, y, t, rowou);
+		int n = Math.max(1, Math.min(WorkerPool.getParallelism(), ny / MIN_BAND));
+		Runnable bands[] = new Runnable[n];
+		for (int i = 0; i < n; i++) {
+			final int y0 = i * ny / n;
+			final int y1 = (i+1) * ny / n;
+			bands[i] = new Runnable() {
+				@Override
+				public void run() {
+					float vxx[] = new float[nx];
+					float vyy[] = new float[nx];
+					float vxy[] = new float[nx];
+					for(int y=y0; y<y1; y++) {
+						int up = (y == 0 ? 1 : y-1) * nx;
+						int down = (y == ny-1 ? ny-2 : y+1) * nx;
+						int row = y * nx;
+						for(int x=0; x<nx; x++) {
+							double a = in[up+x];
+							double b = in[row+x];
+							double c = in[down+x];
+							vxx[x] = (float)(a * SECOND[0] + b * SECOND[1] + c * SECOND[2]);
+							vyy[x] = (float)(a * SMOOTH[0] + b * SMOOTH[1] + c * SMOOTH[2]);
+							vxy[x] = (float)(a * FIRST[0] + b * FIRST[1] + c * FIRST[2]);
+						}
+						convolve3taps(vxx, hxx, row, SMOOTH);
+						convolve3taps(vyy, hyy, row, SECOND);
+						convolve3taps(vxy, hxy, row, FIRST);
+					}
+				}
+			};
 		}
+		WorkerPool.invokeAll(bands);
 	}
 	
 	/**
-	 * Convolves a 1D signal to a kernel with mirror boundary conditions. 
+	 * Convolves a row to a kernel with mirror boundary conditions, the 
+	 * result is written in out from the index offset. 
 	 * 
 	 * Be careful: 
 	 * 1) the kernel should be a 3-taps array.
-	 * 2) the in and the out should be allocated with the same size.
+	 * 2) the row should have at least 2 pixels.
 	 */
-	private void convolve3taps(double[] in, double out[], double[] kernel) {
+	private static void convolve3taps(float[] in, float out[], int offset, double[] kernel) {
 		int n = in.length;
-		out[0] = in[1] * kernel[0] + in[0] * kernel[1] + in[1] * kernel[2];
+		double k0 = kernel[0];
+		double k1 = kernel[1];
+		double k2 = kernel[2];
+		out[offset] = (float)(in[1] * k0 + in[0] * k1 + in[1] * k2);
 		for(int k=1; k<n-1; k++)
-			out[k] = in[k-1] * kernel[0] + in[k] * kernel[1] + in[k+1] * kernel[2];
-		out[n-1] = in[n-2] * kernel[0] + in[n-1] * kernel[1] + in[n-2] * kernel[2];
+			out[offset+k] = (float)(in[k-1] * k0 + in[k] * k1 + in[k+1] * k2);
+		out[offset+n-1] = (float)(in[n-2] * k0 + in[n-1] * k1 + in[n-2] * k2);
 	}
 	
 }
@@ -9,6 +9,12 @@ import ij.process.ImageProcessor;
 import ij.process.ShortProcessor;
 
 import java.awt.Image;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import ij.io.FileInfo;
+import ij.io.TiffDecoder;
 
 /**
  * Class Builder.
@@ -90,6 +96,110 @@ public class Builder {
 		}
 	}
 
+	/**
+	 * Create a float imageware backed by a memory-mapped file, for the stacks
+	 * which do not fit in the memory. The file is created if it does not
+	 * exist, the pixels are stored as 32-bit float in the native byte order.
+	 * 
+	 * @param file
+	 *            file of the stack
+	 * @param nx
+	 *            size in X axis
+	 * @param ny
+	 *            size in Y axis
+	 * @param nz
+	 *            size in Z axis
+	 */
+	public static MappedFloatSet createMapped(File file, int nx, int ny, int nz) throws IOException {
+		return new MappedFloatSet(file, nx, ny, nz, ImageWare.FLOAT, 0, 0, ByteOrder.nativeOrder(), true);
+	}
+
+	/**
+	 * Open a raw stack as a read-only float imageware backed by a memory-mapped
+	 * file.
+	 * 
+	 * @param file
+	 *            file of the stack
+	 * @param nx
+	 *            size in X axis
+	 * @param ny
+	 *            size in Y axis
+	 * @param nz
+	 *            size in Z axis
+	 * @param type
+	 *            type of the pixels in the file, BYTE, SHORT or FLOAT
+	 * @param offset
+	 *            number of bytes before the first pixel
+	 * @param littleEndian
+	 *            byte order of the pixels in the file
+	 */
+	public static MappedFloatSet openMapped(File file, int nx, int ny, int nz, int type, long offset, boolean littleEndian) throws IOException {
+		ByteOrder order = littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		return new MappedFloatSet(file, nx, ny, nz, type, offset, 0, order, false);
+	}
+
+	/**
+	 * Open an uncompressed TIFF stack (8-bit, 16-bit unsigned or 32-bit float)
+	 * as a read-only float imageware backed by a memory-mapped file. The 
+	 * strips of a slice have to be contiguous and the slices have to be stored 
+	 * at regular intervals, as in the stacks saved by ImageJ.
+	 * 
+	 * @param file
+	 *            TIFF file of the stack
+	 */
+	public static MappedFloatSet openMapped(File file) throws IOException {
+		TiffDecoder decoder = new TiffDecoder(file.getParent() + File.separator, file.getName());
+		FileInfo info[] = decoder.getTiffInfo();
+		if (info == null || info.length == 0)
+			throw new IOException("Not a TIFF file: " + file);
+		FileInfo fi = info[0];
+		int type;
+		if (fi.fileType == FileInfo.GRAY8)
+			type = ImageWare.BYTE;
+		else if (fi.fileType == FileInfo.GRAY16_UNSIGNED)
+			type = ImageWare.SHORT;
+		else if (fi.fileType == FileInfo.GRAY32_FLOAT)
+			type = ImageWare.FLOAT;
+		else
+			throw new IOException("Support only the 8-bit, 16-bit and 32-bits type: " + file);
+		if (fi.compression > FileInfo.COMPRESSION_NONE)
+			throw new IOException("Compressed TIFF cannot be mapped: " + file);
+		int bytes = (type == ImageWare.BYTE ? 1 : type == ImageWare.SHORT ? 2 : 4);
+		long size = (long) fi.width * fi.height * bytes;
+		int nz = fi.nImages;
+		long gap = fi.gapBetweenImages;
+		checkStrips(fi, file);
+		if (info.length > 1) {
+			// One IFD per slice, the slices have to be equally spaced
+			nz = info.length;
+			gap = info[1].getOffset() - fi.getOffset() - size;
+			for (int z = 1; z < nz; z++) {
+				checkStrips(info[z], file);
+				if (z > 1 && info[z].getOffset() - info[z - 1].getOffset() != size + gap)
+					throw new IOException("The slices are not stored at regular intervals: " + file);
+			}
+		}
+		ByteOrder order = fi.intelByteOrder ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		return new MappedFloatSet(file, fi.width, fi.height, nz, type, fi.getOffset(), gap, order, false);
+	}
+
+	/**
+	 * Checks that the strips of a TIFF image follow each other from its
+	 * offset, the image is then mapped as one block.
+	 */
+	private static void checkStrips(FileInfo fi, File file) throws IOException {
+		if (fi.stripOffsets == null || fi.stripOffsets.length <= 1)
+			return;
+		if (fi.stripLengths == null || fi.stripLengths.length != fi.stripOffsets.length)
+			throw new IOException("The strips of the TIFF file are not described: " + file);
+		long next = fi.getOffset();
+		for (int k = 0; k < fi.stripOffsets.length; k++) {
+			if ((fi.stripOffsets[k] & 0xFFFFFFFFL) != next)
+				throw new IOException("The strips of the TIFF file are not contiguous, it cannot be mapped: " + file);
+			next += fi.stripLengths[k] & 0xFFFFFFFFL;
+		}
+	}
+
 	/**
 	 * Create a imageware of from an Java AWT Image.
 	 * 
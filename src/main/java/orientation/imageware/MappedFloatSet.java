@@ -0,0 +1 @@
+package orientation.imageware;import ij.ImageStack;import ij.process.FloatProcessor;import java.io.File;import java.io.IOException;import java.io.RandomAccessFile;import java.nio.ByteBuffer;import java.nio.ByteOrder;import java.nio.MappedByteBuffer;import java.nio.channels.FileChannel;import java.util.Arrays;/** * Class MappedFloatSet. * * Float imageware backed by a memory-mapped file, for the stacks which do not * fit in the memory. Every slice is mapped on its own (FileChannel.map) at its * first access, the pixels stay on the disk and are paged in and out by the * operating system. * * The file is a raw stack of 8-bit, 16-bit unsigned or 32-bit float pixels, * with an offset before the first slice and an optional gap between slices * (uncompressed TIFF). Only the 32-bit float files can be written. * * All the accessors read and write directly the mapped slices, only the * pixels of their buffer are touched: a column or a line in Z costs one * access per pixel, whatever the size of the slices. The smoothing in the Z * axis runs on bands of rows. The pointwise operations and the statistics * are applied slice by slice. * * The slices are not held in Java arrays: getVolume() is not available and * getSliceFloat() is only available in read-only mode, it returns a copy. * readSlice() and writeSlice() copy a slice from and to the file. * * @author Daniel Sage Biomedical Imaging Group Ecole Polytechnique Federale de *         Lausanne, Lausanne, Switzerland */public class MappedFloatSet extends FloatSet {	private RandomAccessFile	file;	private FileChannel			channel;	private MappedByteBuffer	slices[];	private long				offset;	private long				gap;	private int					fileType;	private int					bytes;	private ByteOrder			order;	private boolean				writable;	/** Number of pixels of the bands of rows smoothed in the Z axis */	private static final long	BAND			= 1 << 22;	/** Modes of the accessors, with the border of their error messages */	private static final int	NO_CHECK		= 0;	private static final int	BOUNDED			= 1;	private static final int	BLOCK			= 2;	private static final int	NEIGHBORHOOD	= 3;	private static final String	border[]		= { "No check", "Bounded check", "Mirror or periodic boundaray conditions", "Mirror or periodic boundaray conditions" };	/**	 * Constructor of a memory-mapped stack.	 *	 * @param path	 *            file of the stack	 * @param nx	 *            size of the stack in the X axis	 * @param ny	 *            size of the stack in the Y axis	 * @param nz	 *            size of the stack in the Z axis	 * @param fileType	 *            type of the pixels in the file, BYTE, SHORT or FLOAT	 * @param offset	 *            number of bytes before the first slice	 * @param gap	 *            number of bytes between two slices	 * @param order	 *            byte order of the pixels in the file	 * @param writable	 *            true to open the file in read-write mode, it is created if	 *            it does not exist	 */	protected MappedFloatSet(File path, int nx, int ny, int nz, int fileType, long offset, long gap, ByteOrder order, boolean writable) throws IOException {		super(nx, ny, 1);		if (writable && fileType != ImageWare.FLOAT)			throw new IOException("Only the 32-bit float stacks can be mapped in read-write mode: " + path);		this.nz = nz;		this.data = new Object[nz];		this.fileType = fileType;		this.bytes = (fileType == ImageWare.BYTE ? 1 : fileType == ImageWare.SHORT ? 2 : 4);		this.offset = offset;		this.gap = gap;		this.order = order;		this.writable = writable;		this.slices = new MappedByteBuffer[nz];		long length = offset + (long) nz * nxy * bytes + (long) (nz - 1) * gap;		file = new RandomAccessFile(path, writable ? "rw" : "r");		if (writable && file.length() < length)			file.setLength(length);		if (file.length() < length) {			file.close();			throw new IOException("The file is too short for a stack of " + nx + "x" + ny + "x" + nz + ": " + path);		}		channel = file.getChannel();	}	/**	 * Returns the mapped slice z, mapped at its first access. The absolute	 * get and put methods of the returned buffer can be called concurrently.	 */	private synchronized ByteBuffer getMapped(int z) {		if (slices[z] == null) {			FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;			try {				slices[z] = channel.map(mode, offset + z * ((long) nxy * bytes + gap), (long) nxy * bytes);				slices[z].order(order);			}			catch (IOException e) {				throw new ArrayStoreException("\n-------------------------------------------------------\n" + "Error in imageware package\n" + "Unable to map the slice " + z + ".\n" + e.getMessage() + "\n"						+ "-------------------------------------------------------\n");			}		}		return slices[z];	}	/**	 * Returns a view of the mapped slice z, with its own position.	 */	private ByteBuffer getView(int z) {		return getMapped(z).duplicate().order(order);	}	/**	 * Reads a run of pixels starting at the index k of the slice z.	 */	private void read(int z, int k, float[] buffer, int start, int length) {		ByteBuffer mapped = getView(z);		if (fileType == ImageWare.FLOAT) {			mapped.position(k * 4);			mapped.asFloatBuffer().get(buffer, start, length);		}		else if (fileType == ImageWare.SHORT) {			for (int i = 0; i < length; i++)				buffer[start + i] = mapped.getShort((k + i) * 2) & 0xFFFF;		}		else {			for (int i = 0; i < length; i++)				buffer[start + i] = mapped.get(k + i) & 0xFF;		}	}	/**	 * Writes a run of pixels starting at the index k of the slice z.	 */	private void write(int z, int k, float[] buffer, int start, int length) {		ByteBuffer mapped = getView(z);		mapped.position(k * 4);		mapped.asFloatBuffer().put(buffer, start, length);	}	/**	 * Reads the slice z into an in-memory imageware of one slice.	 */	private FloatSet load(int z) {		FloatSet slice = new FloatSet(nx, ny, 1);		read(z, 0, (float[]) slice.data[0], 0, nxy);		return slice;	}	/**	 * Writes an in-memory imageware of one slice into the slice z.	 */	private void store(int z, FloatSet slice) {		write(z, 0, (float[]) slice.data[0], 0, nxy);	}	/**	 * Reads the slice z into the array slice, of size nx*ny.	 */	public void readSlice(int z, float[] slice) {		read(z, 0, slice, 0, nxy);	}	/**	 * Writes the array slice, of size nx*ny, into the slice z.	 */	public void writeSlice(int z, float[] slice) {		write(z, 0, slice, 0, nxy);	}	/**	 * Returns the pixel of index k of a mapped slice.	 */	private float get(ByteBuffer mapped, int k) {		if (fileType == ImageWare.FLOAT)			return mapped.getFloat(k * 4);		else if (fileType == ImageWare.SHORT)			return mapped.getShort(k * 2) & 0xFFFF;		return mapped.get(k) & 0xFF;	}	/**	 * Returns the range { i0, i1, j0, j1, k0, k1 } of the box of size (w, h, d)	 * at the position (x, y, z) which is accessed: the whole box, or only its	 * intersection with the stack in the BOUNDED mode, empty if they do not	 * intersect.	 */	private int[] getRange(int x, int y, int z, int w, int h, int d, int mode) {		if (mode != BOUNDED)			return new int[] { 0, w, 0, h, 0, d };		int range[] = { Math.max(0, -x), Math.min(w, nx - x), Math.max(0, -y), Math.min(h, ny - y), Math.max(0, -z), Math.min(d, nz - z) };		if (range[0] >= range[1] || range[2] >= range[3] || range[4] >= range[5])			return new int[6];		return range;	}	/**	 * Reads the box of size (w, h, d) at the position (x, y, z) from the	 * mapped slices into the array box, in the order X, Y, Z. In the BLOCK and	 * NEIGHBORHOOD modes, the positions outside of the stack are folded by the	 * boundary conditions, the NEIGHBORHOOD box is centered on (x, y, z).	 * Returns the range of the box which is read.	 */	private int[] readBox(float[] box, int x, int y, int z, int w, int h, int d, int mode, byte boundaryConditions, String direction, Object buffer) {		int range[] = getRange(x, y, z, w, h, d, mode);		boolean folded = (mode == BLOCK || mode == NEIGHBORHOOD);		if (mode == BLOCK && boundaryConditions != ImageWare.MIRROR && boundaryConditions != ImageWare.PERIODIC)			throw_get(direction, border[mode], buffer, x, y, z);		if (mode == NEIGHBORHOOD)			boundaryConditions = (boundaryConditions == ImageWare.MIRROR ? ImageWare.MIRROR : ImageWare.PERIODIC);		int xs = (mode == NEIGHBORHOOD ? x - w / 2 : x);		int ys = (mode == NEIGHBORHOOD ? y - h / 2 : y);		int zs = (mode == NEIGHBORHOOD ? z - d / 2 : z);		try {			for (int k = range[4]; k < range[5]; k++) {				ByteBuffer mapped = getMapped(folded ? fold(zs + k, nz, boundaryConditions) : zs + k);				for (int j = range[2]; j < range[3]; j++) {					int yp = (folded ? fold(ys + j, ny, boundaryConditions) : ys + j) * nx;					int index = range[0] + w * (j + h * k);					for (int i = range[0]; i < range[1]; i++)						box[index++] = get(mapped, (folded ? fold(xs + i, nx, boundaryConditions) : xs + i) + yp);				}			}		}		catch (RuntimeException e) {			throw_get(direction, border[mode], buffer, x, y, z);		}		return range;	}	/**	 * Writes the array box, in the order X, Y, Z, into the box of size	 * (w, h, d) at the position (x, y, z) of the mapped slices, or only into	 * its intersection with the stack in the BOUNDED mode.	 */	private void writeBox(float[] box, int x, int y, int z, int w, int h, int d, int mode, String direction, Object buffer) {		int range[] = getRange(x, y, z, w, h, d, mode);		try {			for (int k = range[4]; k < range[5]; k++) {				ByteBuffer mapped = getMapped(z + k);				for (int j = range[2]; j < range[3]; j++) {					int index = range[0] + w * (j + h * k);					int offset = x + range[0] + (y + j) * nx;					for (int i = range[0]; i < range[1]; i++)						mapped.putFloat((offset++) * 4, box[index++]);				}			}		}		catch (RuntimeException e) {			throw_put(direction, border[mode], buffer, x, y, z);		}	}	/**	 * Returns the position v folded into [0, n) by the boundary conditions,	 * as the accessors with boundary conditions of FloatAccess.	 */	private static int fold(int v, int n, byte boundaryConditions) {		int period;		if (boundaryConditions == ImageWare.MIRROR)			period = (n <= 1 ? 1 : 2 * n - 2);		else if (boundaryConditions == ImageWare.PERIODIC)			period = n;		else			return v;		while (v < 0)			v += period;		while (v >= n) {			v = period - v;			v = (v < 0 ? -v : v);		}		return v;	}	/**	 * Writes to the disk the modified pixels of the mapped slices.	 */	public synchronized void flush() {		if (writable)			for (int z = 0; z < nz; z++)				if (slices[z] != null)					slices[z].force();	}	/**	 * Flushes and closes the file. The slices remain mapped until they are	 * garbage collected.	 */	public synchronized void close() throws IOException {		flush();		channel.close();		file.close();	}	/**	 * Returns the type of the pixels in the file.	 */	public int getFileType() {		return fileType;	}	public double getPixel(int x, int y, int z) {		if (x >= nx || y >= ny || z >= nz || x < 0 || y < 0 || z < 0)			return 0.0;		ByteBuffer mapped = getMapped(z);		int k = x + y * nx;		if (fileType == ImageWare.FLOAT)			return mapped.getFloat(k * 4);		else if (fileType == ImageWare.SHORT)			return mapped.getShort(k * 2) & 0xFFFF;		return mapped.get(k) & 0xFF;	}	public void putPixel(int x, int y, int z, double value) {		if (x >= nx || y >= ny || z >= nz || x < 0 || y < 0 || z < 0)			return;		getMapped(z).putFloat((x + y * nx) * 4, (float) value);	}	public double getPixel(int x, int y, int z, byte boundaryConditions) {		if (boundaryConditions != ImageWare.MIRROR && boundaryConditions != ImageWare.PERIODIC)			throw new ArrayStoreException("\n-------------------------------------------------------\n" + "Error in imageware package\n" + "Unable to get a pixel \n" + "at the position (" + x					+ "," + y + "," + z + ".\n" + "-------------------------------------------------------\n");		return getPixel(fold(x, nx, boundaryConditions), fold(y, ny, boundaryConditions), fold(z, nz, boundaryConditions));	}	/**	 * Same as FloatAccess, the neighbors of the pixels on the last row,	 * column or slice have a null weight.	 */	public double getInterpolatedPixel(double x, double y, double z) {		if (x > nx - 1 || y > ny - 1 || z > nz - 1 || x < 0 || y < 0 || z < 0)			return 0.0;		return getInterpolatedPixel(x, y, z, ImageWare.MIRROR);	}	public void getX(int x, int y, int z, float[] buffer) {		read(z, x + y * nx, buffer, 0, buffer.length);	}	public void putX(int x, int y, int z, float[] buffer) {		write(z, x + y * nx, buffer, 0, buffer.length);	}	public void getX(int x, int y, int z, double[] buffer) {		float row[] = new float[buffer.length];		getX(x, y, z, row);		for (int i = 0; i < row.length; i++)			buffer[i] = row[i];	}	public void putX(int x, int y, int z, double[] buffer) {		float row[] = new float[buffer.length];		for (int i = 0; i < row.length; i++)			row[i] = (float) buffer[i];		putX(x, y, z, row);	}	public void getXY(int x, int y, int z, ImageWare buffer) {		int bnx = buffer.getSizeX();		int bny = buffer.getSizeY();		if (buffer.getType() == ImageWare.FLOAT) {			float out[] = buffer.getSliceFloat(0);			for (int j = 0; j < bny; j++)				read(z, x + (y + j) * nx, out, j * bnx, bnx);		}		else {			float row[] = new float[bnx];			for (int j = 0; j < bny; j++) {				read(z, x + (y + j) * nx, row, 0, bnx);				buffer.putX(0, j, 0, row);			}		}	}	public void putXY(int x, int y, int z, ImageWare buffer) {		int bnx = buffer.getSizeX();		int bny = buffer.getSizeY();		if (buffer.getType() == ImageWare.FLOAT) {			float in[] = buffer.getSliceFloat(0);			for (int j = 0; j < bny; j++)				write(z, x + (y + j) * nx, in, j * bnx, bnx);		}		else {			float row[] = new float[bnx];			for (int j = 0; j < bny; j++) {				buffer.getX(0, j, 0, row);				write(z, x + (y + j) * nx, row, 0, bnx);			}		}	}	public void fillConstant(double value) {		float row[] = new float[nx];		Arrays.fill(row, (float) value);		for (int z = 0; z < nz; z++)			for (int y = 0; y < ny; y++)				write(z, y * nx, row, 0, nx);	}	/**	 * Smoothes the stack slice by slice in the X and Y axis, every slice is read	 * in memory, filtered and written back. The smoothing in the Z axis runs on	 * bands of rows of all the slices, of about BAND pixels.	 */	public void smoothGaussian(double sigmaX, double sigmaY, double sigmaZ) {		float slice[] = new float[nxy];		for (int z = 0; z < nz; z++) {			read(z, 0, slice, 0, nxy);			if (nx > 1 && sigmaX > 0.0)				new RecursiveGaussian(RecursiveGaussian.getPole(sigmaX), 3).filterX(slice, nx, ny);			if (ny > 1 && sigmaY > 0.0)				new RecursiveGaussian(RecursiveGaussian.getPole(sigmaY), 3).filterY(slice, nx, ny);			write(z, 0, slice, 0, nxy);		}		if (nz > 1 && sigmaZ > 0.0) {			int rows = (int) Math.max(1, Math.min(ny, BAND / ((long) nx * nz)));			for (int y = 0; y < ny; y += rows) {				int h = Math.min(rows, ny - y);				FloatSet band = new FloatSet(nx, h, nz);				for (int z = 0; z < nz; z++)					read(z, y * nx, (float[]) band.data[z], 0, nx * h);				band.smoothGaussian(0.0, 0.0, sigmaZ);				for (int z = 0; z < nz; z++)					write(z, y * nx, (float[]) band.data[z], 0, nx * h);			}		}	}	/**	 * Returns a copy of the slice z in read-only mode. Not available in	 * read-write mode, the changes of a copy would not be written to the file:	 * use readSlice() and writeSlice().	 */	public float[] getSliceFloat(int z) {		if (writable)			throw new ArrayStoreException("\n-------------------------------------------------------\n" + "Error in imageware package\n"					+ "The slices of a memory-mapped imageware in read-write mode are not held in memory.\n" + "Use readSlice() and writeSlice().\n"					+ "-------------------------------------------------------\n");		float slice[] = new float[nxy];		read(z, 0, slice, 0, nxy);		return slice;	}	/**	 * Not available, the slices are not held in memory.	 */	public Object[] getVolume() {		throw new ArrayStoreException("\n-------------------------------------------------------\n" + "Error in imageware package\n"				+ "The volume of a memory-mapped imageware is not held in memory.\n" + "-------------------------------------------------------\n");	}	public double[] getMinMax() {		double min = Double.MAX_VALUE;		double max = -Double.MAX_VALUE;		float row[] = new float[nx];		for (int z = 0; z < nz; z++)			for (int y = 0; y < ny; y++) {				read(z, y * nx, row, 0, nx);				for (int x = 0; x < nx; x++) {					if (row[x] > max)						max = row[x];					if (row[x] < min)						min = row[x];				}			}		return new double[] { min, max };	}	public double getMinimum() {		return getMinMax()[0];	}	public double getMaximum() {		return getMinMax()[1];	}	/**	 * Duplicate the imageware into the memory.	 *	 * @return a float imageware with the same size and same data	 */	public ImageWare duplicate() {		FloatSet out = new FloatSet(nx, ny, nz);		for (int z = 0; z < nz; z++)			read(z, 0, (float[]) out.data[z], 0, nxy);		return out;	}	// ------------------------------------------------------------------	//	// Accessors, read and written directly in the mapped slices	//	// ------------------------------------------------------------------	public void getX(int x, int y, int z, byte[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, NO_CHECK, ImageWare.MIRROR, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getBoundedX(int x, int y, int z, byte[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, BOUNDED, ImageWare.MIRROR, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getBlockX(int x, int y, int z, byte[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, BLOCK, boundaryConditions, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getNeighborhoodX(int x, int y, int z, byte[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, NEIGHBORHOOD, boundaryConditions, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void putX(int x, int y, int z, byte[] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, 1, NO_CHECK, "X", buffer);	}	public void putBoundedX(int x, int y, int z, byte[] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, 1, BOUNDED, "X", buffer);	}	public void getY(int x, int y, int z, byte[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, NO_CHECK, ImageWare.MIRROR, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getBoundedY(int x, int y, int z, byte[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, BOUNDED, ImageWare.MIRROR, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getBlockY(int x, int y, int z, byte[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, BLOCK, boundaryConditions, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getNeighborhoodY(int x, int y, int z, byte[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, NEIGHBORHOOD, boundaryConditions, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void putY(int x, int y, int z, byte[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, 1, NO_CHECK, "Y", buffer);	}	public void putBoundedY(int x, int y, int z, byte[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, 1, BOUNDED, "Y", buffer);	}	public void getZ(int x, int y, int z, byte[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, NO_CHECK, ImageWare.MIRROR, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getBoundedZ(int x, int y, int z, byte[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, BOUNDED, ImageWare.MIRROR, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getBlockZ(int x, int y, int z, byte[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, BLOCK, boundaryConditions, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getNeighborhoodZ(int x, int y, int z, byte[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, NEIGHBORHOOD, boundaryConditions, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void putZ(int x, int y, int z, byte[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, 1, buffer.length, NO_CHECK, "Z", buffer);	}	public void putBoundedZ(int x, int y, int z, byte[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, 1, buffer.length, BOUNDED, "Z", buffer);	}	public void getXY(int x, int y, int z, byte[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, NO_CHECK, ImageWare.MIRROR, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getBoundedXY(int x, int y, int z, byte[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, BOUNDED, ImageWare.MIRROR, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getBlockXY(int x, int y, int z, byte[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, BLOCK, boundaryConditions, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getNeighborhoodXY(int x, int y, int z, byte[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, NEIGHBORHOOD, boundaryConditions, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void putXY(int x, int y, int z, byte[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, 1, NO_CHECK, "XY", buffer);	}	public void putBoundedXY(int x, int y, int z, byte[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, 1, BOUNDED, "XY", buffer);	}	public void getXZ(int x, int y, int z, byte[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, NO_CHECK, ImageWare.MIRROR, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getBoundedXZ(int x, int y, int z, byte[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, BOUNDED, ImageWare.MIRROR, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getBlockXZ(int x, int y, int z, byte[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, BLOCK, boundaryConditions, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getNeighborhoodXZ(int x, int y, int z, byte[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, NEIGHBORHOOD, boundaryConditions, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void putXZ(int x, int y, int z, byte[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, buffer[0].length, NO_CHECK, "XZ", buffer);	}	public void putBoundedXZ(int x, int y, int z, byte[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, buffer[0].length, BOUNDED, "XZ", buffer);	}	public void getYZ(int x, int y, int z, byte[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, NO_CHECK, ImageWare.MIRROR, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getBoundedYZ(int x, int y, int z, byte[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, BOUNDED, ImageWare.MIRROR, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getBlockYZ(int x, int y, int z, byte[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, BLOCK, boundaryConditions, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getNeighborhoodYZ(int x, int y, int z, byte[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, NEIGHBORHOOD, boundaryConditions, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void putYZ(int x, int y, int z, byte[][] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, buffer[0].length, NO_CHECK, "YZ", buffer);	}	public void putBoundedYZ(int x, int y, int z, byte[][] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, buffer[0].length, BOUNDED, "YZ", buffer);	}	public void getXYZ(int x, int y, int z, byte[][][] buffer) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NO_CHECK, ImageWare.MIRROR, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getBoundedXYZ(int x, int y, int z, byte[][][] buffer) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BOUNDED, ImageWare.MIRROR, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getBlockXYZ(int x, int y, int z, byte[][][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BLOCK, boundaryConditions, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getNeighborhoodXYZ(int x, int y, int z, byte[][][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NEIGHBORHOOD, boundaryConditions, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void putXYZ(int x, int y, int z, byte[][][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NO_CHECK, "XYZ", buffer);	}	public void putBoundedXYZ(int x, int y, int z, byte[][][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BOUNDED, "XYZ", buffer);	}	public void getX(int x, int y, int z, short[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, NO_CHECK, ImageWare.MIRROR, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getBoundedX(int x, int y, int z, short[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, BOUNDED, ImageWare.MIRROR, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getBlockX(int x, int y, int z, short[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, BLOCK, boundaryConditions, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getNeighborhoodX(int x, int y, int z, short[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, NEIGHBORHOOD, boundaryConditions, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void putX(int x, int y, int z, short[] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, 1, NO_CHECK, "X", buffer);	}	public void putBoundedX(int x, int y, int z, short[] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, 1, BOUNDED, "X", buffer);	}	public void getY(int x, int y, int z, short[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, NO_CHECK, ImageWare.MIRROR, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getBoundedY(int x, int y, int z, short[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, BOUNDED, ImageWare.MIRROR, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getBlockY(int x, int y, int z, short[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, BLOCK, boundaryConditions, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getNeighborhoodY(int x, int y, int z, short[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, NEIGHBORHOOD, boundaryConditions, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void putY(int x, int y, int z, short[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, 1, NO_CHECK, "Y", buffer);	}	public void putBoundedY(int x, int y, int z, short[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, 1, BOUNDED, "Y", buffer);	}	public void getZ(int x, int y, int z, short[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, NO_CHECK, ImageWare.MIRROR, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getBoundedZ(int x, int y, int z, short[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, BOUNDED, ImageWare.MIRROR, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getBlockZ(int x, int y, int z, short[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, BLOCK, boundaryConditions, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getNeighborhoodZ(int x, int y, int z, short[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, NEIGHBORHOOD, boundaryConditions, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void putZ(int x, int y, int z, short[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, 1, buffer.length, NO_CHECK, "Z", buffer);	}	public void putBoundedZ(int x, int y, int z, short[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, 1, buffer.length, BOUNDED, "Z", buffer);	}	public void getXY(int x, int y, int z, short[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, NO_CHECK, ImageWare.MIRROR, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getBoundedXY(int x, int y, int z, short[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, BOUNDED, ImageWare.MIRROR, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getBlockXY(int x, int y, int z, short[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, BLOCK, boundaryConditions, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getNeighborhoodXY(int x, int y, int z, short[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, NEIGHBORHOOD, boundaryConditions, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void putXY(int x, int y, int z, short[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, 1, NO_CHECK, "XY", buffer);	}	public void putBoundedXY(int x, int y, int z, short[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, 1, BOUNDED, "XY", buffer);	}	public void getXZ(int x, int y, int z, short[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, NO_CHECK, ImageWare.MIRROR, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getBoundedXZ(int x, int y, int z, short[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, BOUNDED, ImageWare.MIRROR, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getBlockXZ(int x, int y, int z, short[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, BLOCK, boundaryConditions, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getNeighborhoodXZ(int x, int y, int z, short[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, NEIGHBORHOOD, boundaryConditions, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void putXZ(int x, int y, int z, short[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, buffer[0].length, NO_CHECK, "XZ", buffer);	}	public void putBoundedXZ(int x, int y, int z, short[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, buffer[0].length, BOUNDED, "XZ", buffer);	}	public void getYZ(int x, int y, int z, short[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, NO_CHECK, ImageWare.MIRROR, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getBoundedYZ(int x, int y, int z, short[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, BOUNDED, ImageWare.MIRROR, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getBlockYZ(int x, int y, int z, short[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, BLOCK, boundaryConditions, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getNeighborhoodYZ(int x, int y, int z, short[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, NEIGHBORHOOD, boundaryConditions, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void putYZ(int x, int y, int z, short[][] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, buffer[0].length, NO_CHECK, "YZ", buffer);	}	public void putBoundedYZ(int x, int y, int z, short[][] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, buffer[0].length, BOUNDED, "YZ", buffer);	}	public void getXYZ(int x, int y, int z, short[][][] buffer) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NO_CHECK, ImageWare.MIRROR, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getBoundedXYZ(int x, int y, int z, short[][][] buffer) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BOUNDED, ImageWare.MIRROR, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getBlockXYZ(int x, int y, int z, short[][][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BLOCK, boundaryConditions, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getNeighborhoodXYZ(int x, int y, int z, short[][][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NEIGHBORHOOD, boundaryConditions, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void putXYZ(int x, int y, int z, short[][][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NO_CHECK, "XYZ", buffer);	}	public void putBoundedXYZ(int x, int y, int z, short[][][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BOUNDED, "XYZ", buffer);	}	public void getBoundedX(int x, int y, int z, float[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, BOUNDED, ImageWare.MIRROR, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getBlockX(int x, int y, int z, float[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, BLOCK, boundaryConditions, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getNeighborhoodX(int x, int y, int z, float[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, NEIGHBORHOOD, boundaryConditions, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void putBoundedX(int x, int y, int z, float[] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, 1, BOUNDED, "X", buffer);	}	public void getY(int x, int y, int z, float[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, NO_CHECK, ImageWare.MIRROR, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getBoundedY(int x, int y, int z, float[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, BOUNDED, ImageWare.MIRROR, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getBlockY(int x, int y, int z, float[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, BLOCK, boundaryConditions, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getNeighborhoodY(int x, int y, int z, float[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, NEIGHBORHOOD, boundaryConditions, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void putY(int x, int y, int z, float[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, 1, NO_CHECK, "Y", buffer);	}	public void putBoundedY(int x, int y, int z, float[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, 1, BOUNDED, "Y", buffer);	}	public void getZ(int x, int y, int z, float[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, NO_CHECK, ImageWare.MIRROR, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getBoundedZ(int x, int y, int z, float[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, BOUNDED, ImageWare.MIRROR, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getBlockZ(int x, int y, int z, float[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, BLOCK, boundaryConditions, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getNeighborhoodZ(int x, int y, int z, float[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, NEIGHBORHOOD, boundaryConditions, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void putZ(int x, int y, int z, float[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, 1, buffer.length, NO_CHECK, "Z", buffer);	}	public void putBoundedZ(int x, int y, int z, float[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, 1, buffer.length, BOUNDED, "Z", buffer);	}	public void getXY(int x, int y, int z, float[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, NO_CHECK, ImageWare.MIRROR, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getBoundedXY(int x, int y, int z, float[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, BOUNDED, ImageWare.MIRROR, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getBlockXY(int x, int y, int z, float[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, BLOCK, boundaryConditions, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getNeighborhoodXY(int x, int y, int z, float[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, NEIGHBORHOOD, boundaryConditions, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void putXY(int x, int y, int z, float[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, 1, NO_CHECK, "XY", buffer);	}	public void putBoundedXY(int x, int y, int z, float[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, 1, BOUNDED, "XY", buffer);	}	public void getXZ(int x, int y, int z, float[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, NO_CHECK, ImageWare.MIRROR, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getBoundedXZ(int x, int y, int z, float[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, BOUNDED, ImageWare.MIRROR, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getBlockXZ(int x, int y, int z, float[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, BLOCK, boundaryConditions, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getNeighborhoodXZ(int x, int y, int z, float[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, NEIGHBORHOOD, boundaryConditions, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void putXZ(int x, int y, int z, float[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, buffer[0].length, NO_CHECK, "XZ", buffer);	}	public void putBoundedXZ(int x, int y, int z, float[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, buffer[0].length, BOUNDED, "XZ", buffer);	}	public void getYZ(int x, int y, int z, float[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, NO_CHECK, ImageWare.MIRROR, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getBoundedYZ(int x, int y, int z, float[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, BOUNDED, ImageWare.MIRROR, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getBlockYZ(int x, int y, int z, float[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, BLOCK, boundaryConditions, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getNeighborhoodYZ(int x, int y, int z, float[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, NEIGHBORHOOD, boundaryConditions, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void putYZ(int x, int y, int z, float[][] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, buffer[0].length, NO_CHECK, "YZ", buffer);	}	public void putBoundedYZ(int x, int y, int z, float[][] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, buffer[0].length, BOUNDED, "YZ", buffer);	}	public void getXYZ(int x, int y, int z, float[][][] buffer) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NO_CHECK, ImageWare.MIRROR, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getBoundedXYZ(int x, int y, int z, float[][][] buffer) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BOUNDED, ImageWare.MIRROR, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getBlockXYZ(int x, int y, int z, float[][][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BLOCK, boundaryConditions, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getNeighborhoodXYZ(int x, int y, int z, float[][][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NEIGHBORHOOD, boundaryConditions, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void putXYZ(int x, int y, int z, float[][][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NO_CHECK, "XYZ", buffer);	}	public void putBoundedXYZ(int x, int y, int z, float[][][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BOUNDED, "XYZ", buffer);	}	public void getBoundedX(int x, int y, int z, double[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, BOUNDED, ImageWare.MIRROR, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getBlockX(int x, int y, int z, double[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, BLOCK, boundaryConditions, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void getNeighborhoodX(int x, int y, int z, double[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, buffer.length, 1, 1, NEIGHBORHOOD, boundaryConditions, "X", buffer);		toBuffer(box, range, 0, buffer);	}	public void putBoundedX(int x, int y, int z, double[] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, 1, BOUNDED, "X", buffer);	}	public void getY(int x, int y, int z, double[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, NO_CHECK, ImageWare.MIRROR, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getBoundedY(int x, int y, int z, double[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, BOUNDED, ImageWare.MIRROR, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getBlockY(int x, int y, int z, double[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, BLOCK, boundaryConditions, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void getNeighborhoodY(int x, int y, int z, double[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, buffer.length, 1, NEIGHBORHOOD, boundaryConditions, "Y", buffer);		toBuffer(box, range, 2, buffer);	}	public void putY(int x, int y, int z, double[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, 1, NO_CHECK, "Y", buffer);	}	public void putBoundedY(int x, int y, int z, double[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, 1, BOUNDED, "Y", buffer);	}	public void getZ(int x, int y, int z, double[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, NO_CHECK, ImageWare.MIRROR, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getBoundedZ(int x, int y, int z, double[] buffer) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, BOUNDED, ImageWare.MIRROR, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getBlockZ(int x, int y, int z, double[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, BLOCK, boundaryConditions, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void getNeighborhoodZ(int x, int y, int z, double[] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length];		int range[] = readBox(box, x, y, z, 1, 1, buffer.length, NEIGHBORHOOD, boundaryConditions, "Z", buffer);		toBuffer(box, range, 4, buffer);	}	public void putZ(int x, int y, int z, double[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, 1, buffer.length, NO_CHECK, "Z", buffer);	}	public void putBoundedZ(int x, int y, int z, double[] buffer) {		writeBox(toBox(buffer), x, y, z, 1, 1, buffer.length, BOUNDED, "Z", buffer);	}	public void getXY(int x, int y, int z, double[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, NO_CHECK, ImageWare.MIRROR, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getBoundedXY(int x, int y, int z, double[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, BOUNDED, ImageWare.MIRROR, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getBlockXY(int x, int y, int z, double[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, BLOCK, boundaryConditions, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void getNeighborhoodXY(int x, int y, int z, double[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, 1, NEIGHBORHOOD, boundaryConditions, "XY", buffer);		toBuffer(box, range, 0, 2, buffer);	}	public void putXY(int x, int y, int z, double[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, 1, NO_CHECK, "XY", buffer);	}	public void putBoundedXY(int x, int y, int z, double[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, 1, BOUNDED, "XY", buffer);	}	public void getXZ(int x, int y, int z, double[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, NO_CHECK, ImageWare.MIRROR, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getBoundedXZ(int x, int y, int z, double[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, BOUNDED, ImageWare.MIRROR, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getBlockXZ(int x, int y, int z, double[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, BLOCK, boundaryConditions, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void getNeighborhoodXZ(int x, int y, int z, double[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, buffer.length, 1, buffer[0].length, NEIGHBORHOOD, boundaryConditions, "XZ", buffer);		toBuffer(box, range, 0, 4, buffer);	}	public void putXZ(int x, int y, int z, double[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, buffer[0].length, NO_CHECK, "XZ", buffer);	}	public void putBoundedXZ(int x, int y, int z, double[][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, 1, buffer[0].length, BOUNDED, "XZ", buffer);	}	public void getYZ(int x, int y, int z, double[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, NO_CHECK, ImageWare.MIRROR, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getBoundedYZ(int x, int y, int z, double[][] buffer) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, BOUNDED, ImageWare.MIRROR, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getBlockYZ(int x, int y, int z, double[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, BLOCK, boundaryConditions, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void getNeighborhoodYZ(int x, int y, int z, double[][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length];		int range[] = readBox(box, x, y, z, 1, buffer.length, buffer[0].length, NEIGHBORHOOD, boundaryConditions, "YZ", buffer);		toBuffer(box, range, 2, 4, buffer);	}	public void putYZ(int x, int y, int z, double[][] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, buffer[0].length, NO_CHECK, "YZ", buffer);	}	public void putBoundedYZ(int x, int y, int z, double[][] buffer) {		writeBox(toBox(buffer), x, y, z, 1, buffer.length, buffer[0].length, BOUNDED, "YZ", buffer);	}	public void getXYZ(int x, int y, int z, double[][][] buffer) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NO_CHECK, ImageWare.MIRROR, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getBoundedXYZ(int x, int y, int z, double[][][] buffer) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BOUNDED, ImageWare.MIRROR, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getBlockXYZ(int x, int y, int z, double[][][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BLOCK, boundaryConditions, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void getNeighborhoodXYZ(int x, int y, int z, double[][][] buffer, byte boundaryConditions) {		float box[] = new float[buffer.length * buffer[0].length * buffer[0][0].length];		int range[] = readBox(box, x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NEIGHBORHOOD, boundaryConditions, "XYZ", buffer);		toBuffer(box, range, buffer);	}	public void putXYZ(int x, int y, int z, double[][][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, NO_CHECK, "XYZ", buffer);	}	public void putBoundedXYZ(int x, int y, int z, double[][][] buffer) {		writeBox(toBox(buffer), x, y, z, buffer.length, buffer[0].length, buffer[0][0].length, BOUNDED, "XYZ", buffer);	}	// ------------------------------------------------------------------	//	// Conversions between the typed buffers and the boxes of readBox() and	// writeBox(), only the range read is copied into the buffer	//	// ------------------------------------------------------------------	private static void toBuffer(float[] box, int[] range, int a, byte[] buffer) {		for (int i = range[a]; i < range[a + 1]; i++)			buffer[i] = (byte) box[i];	}	private static void toBuffer(float[] box, int[] range, int a, int b, byte[][] buffer) {		int len = buffer.length;		for (int j = range[b]; j < range[b + 1]; j++)			for (int i = range[a]; i < range[a + 1]; i++)				buffer[i][j] = (byte) box[i + len * j];	}	private static void toBuffer(float[] box, int[] range, byte[][][] buffer) {		int leni = buffer.length;		int lenj = buffer[0].length;		for (int k = range[4]; k < range[5]; k++)			for (int j = range[2]; j < range[3]; j++)				for (int i = range[0]; i < range[1]; i++)					buffer[i][j][k] = (byte) box[i + leni * (j + lenj * k)];	}	private static float[] toBox(byte[] buffer) {		float box[] = new float[buffer.length];		for (int i = 0; i < box.length; i++)			box[i] = (float) (buffer[i] & 0xFF);		return box;	}	private static float[] toBox(byte[][] buffer) {		int len = buffer.length;		float box[] = new float[len * buffer[0].length];		for (int j = 0; j < buffer[0].length; j++)			for (int i = 0; i < len; i++)				box[i + len * j] = (float) (buffer[i][j] & 0xFF);		return box;	}	private static float[] toBox(byte[][][] buffer) {		int leni = buffer.length;		int lenj = buffer[0].length;		int lenk = buffer[0][0].length;		float box[] = new float[leni * lenj * lenk];		for (int k = 0; k < lenk; k++)			for (int j = 0; j < lenj; j++)				for (int i = 0; i < leni; i++)					box[i + leni * (j + lenj * k)] = (float) (buffer[i][j][k] & 0xFF);		return box;	}	private static void toBuffer(float[] box, int[] range, int a, short[] buffer) {		for (int i = range[a]; i < range[a + 1]; i++)			buffer[i] = (short) box[i];	}	private static void toBuffer(float[] box, int[] range, int a, int b, short[][] buffer) {		int len = buffer.length;		for (int j = range[b]; j < range[b + 1]; j++)			for (int i = range[a]; i < range[a + 1]; i++)				buffer[i][j] = (short) box[i + len * j];	}	private static void toBuffer(float[] box, int[] range, short[][][] buffer) {		int leni = buffer.length;		int lenj = buffer[0].length;		for (int k = range[4]; k < range[5]; k++)			for (int j = range[2]; j < range[3]; j++)				for (int i = range[0]; i < range[1]; i++)					buffer[i][j][k] = (short) box[i + leni * (j + lenj * k)];	}	private static float[] toBox(short[] buffer) {		float box[] = new float[buffer.length];		for (int i = 0; i < box.length; i++)			box[i] = (float) (buffer[i] & 0xFFFF);		return box;	}	private static float[] toBox(short[][] buffer) {		int len = buffer.length;		float box[] = new float[len * buffer[0].length];		for (int j = 0; j < buffer[0].length; j++)			for (int i = 0; i < len; i++)				box[i + len * j] = (float) (buffer[i][j] & 0xFFFF);		return box;	}	private static float[] toBox(short[][][] buffer) {		int leni = buffer.length;		int lenj = buffer[0].length;		int lenk = buffer[0][0].length;		float box[] = new float[leni * lenj * lenk];		for (int k = 0; k < lenk; k++)			for (int j = 0; j < lenj; j++)				for (int i = 0; i < leni; i++)					box[i + leni * (j + lenj * k)] = (float) (buffer[i][j][k] & 0xFFFF);		return box;	}	private static void toBuffer(float[] box, int[] range, int a, float[] buffer) {		for (int i = range[a]; i < range[a + 1]; i++)			buffer[i] = box[i];	}	private static void toBuffer(float[] box, int[] range, int a, int b, float[][] buffer) {		int len = buffer.length;		for (int j = range[b]; j < range[b + 1]; j++)			for (int i = range[a]; i < range[a + 1]; i++)				buffer[i][j] = box[i + len * j];	}	private static void toBuffer(float[] box, int[] range, float[][][] buffer) {		int leni = buffer.length;		int lenj = buffer[0].length;		for (int k = range[4]; k < range[5]; k++)			for (int j = range[2]; j < range[3]; j++)				for (int i = range[0]; i < range[1]; i++)					buffer[i][j][k] = box[i + leni * (j + lenj * k)];	}	private static float[] toBox(float[] buffer) {		float box[] = new float[buffer.length];		for (int i = 0; i < box.length; i++)			box[i] = buffer[i];		return box;	}	private static float[] toBox(float[][] buffer) {		int len = buffer.length;		float box[] = new float[len * buffer[0].length];		for (int j = 0; j < buffer[0].length; j++)			for (int i = 0; i < len; i++)				box[i + len * j] = buffer[i][j];		return box;	}	private static float[] toBox(float[][][] buffer) {		int leni = buffer.length;		int lenj = buffer[0].length;		int lenk = buffer[0][0].length;		float box[] = new float[leni * lenj * lenk];		for (int k = 0; k < lenk; k++)			for (int j = 0; j < lenj; j++)				for (int i = 0; i < leni; i++)					box[i + leni * (j + lenj * k)] = buffer[i][j][k];		return box;	}	private static void toBuffer(float[] box, int[] range, int a, double[] buffer) {		for (int i = range[a]; i < range[a + 1]; i++)			buffer[i] = box[i];	}	private static void toBuffer(float[] box, int[] range, int a, int b, double[][] buffer) {		int len = buffer.length;		for (int j = range[b]; j < range[b + 1]; j++)			for (int i = range[a]; i < range[a + 1]; i++)				buffer[i][j] = box[i + len * j];	}	private static void toBuffer(float[] box, int[] range, double[][][] buffer) {		int leni = buffer.length;		int lenj = buffer[0].length;		for (int k = range[4]; k < range[5]; k++)			for (int j = range[2]; j < range[3]; j++)				for (int i = range[0]; i < range[1]; i++)					buffer[i][j][k] = box[i + leni * (j + lenj * k)];	}	private static float[] toBox(double[] buffer) {		float box[] = new float[buffer.length];		for (int i = 0; i < box.length; i++)			box[i] = (float) buffer[i];		return box;	}	private static float[] toBox(double[][] buffer) {		int len = buffer.length;		float box[] = new float[len * buffer[0].length];		for (int j = 0; j < buffer[0].length; j++)			for (int i = 0; i < len; i++)				box[i + len * j] = (float) buffer[i][j];		return box;	}	private static float[] toBox(double[][][] buffer) {		int leni = buffer.length;		int lenj = buffer[0].length;		int lenk = buffer[0][0].length;		float box[] = new float[leni * lenj * lenk];		for (int k = 0; k < lenk; k++)			for (int j = 0; j < lenj; j++)				for (int i = 0; i < leni; i++)					box[i + leni * (j + lenj * k)] = (float) buffer[i][j][k];		return box;	}	// ------------------------------------------------------------------	//	// Pointwise operations, slice by slice	//	// ------------------------------------------------------------------	public void fillGaussianNoise(double amplitude) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.fillGaussianNoise(amplitude);			store(z, slice);		}	}	public void fillUniformNoise(double amplitude) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.fillUniformNoise(amplitude);			store(z, slice);		}	}	public void fillSaltPepper(double amplitudeSalt, double amplitudePepper, double percentageSalt, double percentagePepper) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.fillSaltPepper(amplitudeSalt, amplitudePepper, percentageSalt, percentagePepper);			store(z, slice);		}	}	public void negate() {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.negate();			store(z, slice);		}	}	public void clip(double minLevel, double maxLevel) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.clip(minLevel, maxLevel);			store(z, slice);		}	}	public void abs() {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.abs();			store(z, slice);		}	}	public void log() {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.log();			store(z, slice);		}	}	public void exp() {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.exp();			store(z, slice);		}	}	public void sqrt() {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.sqrt();			store(z, slice);		}	}	public void sqr() {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.sqr();			store(z, slice);		}	}	public void pow(double a) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.pow(a);			store(z, slice);		}	}	public void add(double constant) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.add(constant);			store(z, slice);		}	}	public void multiply(double constant) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.multiply(constant);			store(z, slice);		}	}	public void subtract(double constant) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.subtract(constant);			store(z, slice);		}	}	public void divide(double constant) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.divide(constant);			store(z, slice);		}	}	public void threshold(double thresholdValue, double minLevel, double maxLevel) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.threshold(thresholdValue, minLevel, maxLevel);			store(z, slice);		}	}	public void thresholdSoft(double thresholdValue) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.thresholdSoft(thresholdValue);			store(z, slice);		}	}	public void thresholdHard(double thresholdValue) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.thresholdHard(thresholdValue);			store(z, slice);		}	}	public void addGaussianNoise(double amplitude) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.addGaussianNoise(amplitude);			store(z, slice);		}	}	public void addUniformNoise(double amplitude) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.addUniformNoise(amplitude);			store(z, slice);		}	}	public void addSaltPepper(double amplitudeSalt, double amplitudePepper, double percentageSalt, double percentagePepper) {		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.addSaltPepper(amplitudeSalt, amplitudePepper, percentageSalt, percentagePepper);			store(z, slice);		}	}	public void fillRamp() {		float slice[] = new float[nxy];		int off = 0;		for (int z = 0; z < nz; z++) {			for (int k = 0; k < nxy; k++)				slice[k] = (float) (off + k);			write(z, 0, slice, 0, nxy);			off += nxy;		}	}	public void invert() {		affine(-1.0, getMaximum(), 0.0);	}	public void rescale() {		double minmax[] = getMinMax();		if (minmax[0] - minmax[1] == 0)			affine(1.0, 128.0, 0.0);		else			affine(255.0 / (minmax[1] - minmax[0]), minmax[0], 0.0);	}	public void rescale(double minLevel, double maxLevel) {		double minmax[] = getMinMax();		if (minmax[0] - minmax[1] == 0)			affine(1.0, (maxLevel - minLevel) / 2.0, minLevel);		else			affine((maxLevel - minLevel) / (minmax[1] - minmax[0]), minmax[0], minLevel);	}	public void rescaleCenter(double minLevel, double maxLevel) {		double minmax[] = getMinMax();		double center = (maxLevel + minLevel) / 2.0;		if (minmax[0] - minmax[1] == 0)			affine(1.0, (maxLevel - minLevel) / 2.0, center);		else if (Math.abs(minmax[1]) > Math.abs(minmax[0]))			affine((maxLevel - center) / Math.abs(minmax[1]), minmax[0], center);		else			affine((center - minLevel) / Math.abs(minmax[0]), minmax[0], center);	}	/**	 * Replaces every pixel v by a * (v - min) + shift, slice by slice.	 */	private void affine(double a, double min, double shift) {		float slice[] = new float[nxy];		for (int z = 0; z < nz; z++) {			read(z, 0, slice, 0, nxy);			for (int k = 0; k < nxy; k++)				slice[k] = (float) (a * (((double) (slice[k])) - min) + shift);			write(z, 0, slice, 0, nxy);		}	}	public ImageStack buildImageStack() {		ImageStack imagestack = new ImageStack(nx, ny);		for (int z = 0; z < nz; z++) {			FloatProcessor ip = new FloatProcessor(nx, ny);			read(z, 0, (float[]) ip.getPixels(), 0, nxy);			imagestack.addSlice("" + z, ip);		}		return imagestack;	}	// ------------------------------------------------------------------	//	// Operations with an other imageware, slice by slice	//	// ------------------------------------------------------------------	public void max(ImageWare imageware) {		checkSize(imageware, "compute the maximum");		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.max(getSlice(imageware, z));			store(z, slice);		}	}	public void min(ImageWare imageware) {		checkSize(imageware, "compute the minimum");		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.min(getSlice(imageware, z));			store(z, slice);		}	}	public void add(ImageWare imageware) {		checkSize(imageware, "add");		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.add(getSlice(imageware, z));			store(z, slice);		}	}	public void multiply(ImageWare imageware) {		checkSize(imageware, "multiply");		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.multiply(getSlice(imageware, z));			store(z, slice);		}	}	public void subtract(ImageWare imageware) {		checkSize(imageware, "subtract");		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.subtract(getSlice(imageware, z));			store(z, slice);		}	}	public void divide(ImageWare imageware) {		checkSize(imageware, "divide");		for (int z = 0; z < nz; z++) {			FloatSet slice = load(z);			slice.divide(getSlice(imageware, z));			store(z, slice);		}	}	/**	 * Copies a source with the same size and type, slice by slice.	 */	public void copy(ImageWare source) {		checkSize(source, "copy");		if (getType() != source.getType())			throw new ArrayStoreException("\n-------------------------------------------------------\n" + "Error in imageware package\n" + "Unable to copy because it is not the same type ("					+ getType() + " != " + source.getType() + ").\n" + "-------------------------------------------------------\n");		for (int z = 0; z < nz; z++) {			FloatSet slice = new FloatSet(nx, ny, 1);			source.getXY(0, 0, z, slice);			store(z, slice);		}	}	/**	 * Converts the imageware into the memory.	 */	public ImageWare convert(int type) {		if (type == ImageWare.FLOAT)			return duplicate();		ImageWare out = Builder.create(nx, ny, nz, type);		for (int z = 0; z < nz; z++)			out.putXY(0, 0, z, load(z));		return out;	}	/**	 * Returns the slice z of an imageware in an in-memory imageware of the	 * same type.	 */	private ImageWare getSlice(ImageWare imageware, int z) {		ImageWare slice = Builder.create(nx, ny, 1, imageware.getType());		imageware.getXY(0, 0, z, slice);		return slice;	}	private void checkSize(ImageWare imageware, String operation) {		if (!isSameSize(imageware))			throw new ArrayStoreException("\n-------------------------------------------------------\n" + "Error in imageware package\n" + "Unable to " + operation					+ " because the two operands are not the same size.\n" + "[" + nx + "," + ny + "," + nz + "] != " + "[" + imageware.getSizeX() + "," + imageware.getSizeY() + ","					+ imageware.getSizeZ() + "].\n" + "-------------------------------------------------------\n");	}	// ------------------------------------------------------------------	//	// Statistics, slice by slice	//	// ------------------------------------------------------------------	public double getNorm1() {		double norm = 0.0;		double value = 0;		float slice[] = new float[nxy];		for (int z = 0; z < nz; z++) {			read(z, 0, slice, 0, nxy);			for (int k = 0; k < nxy; k++) {				value = (double) (slice[k]);				norm += (value > 0.0 ? value : -value);			}		}		return norm;	}	public double getNorm2() {		double norm = 0.0;		float slice[] = new float[nxy];		for (int z = 0; z < nz; z++) {			read(z, 0, slice, 0, nxy);			for (int k = 0; k < nxy; k++)				norm += (slice[k]) * (slice[k]);		}		return norm;	}	public double getTotal() {		double total = 0.0;		float slice[] = new float[nxy];		for (int z = 0; z < nz; z++) {			read(z, 0, slice, 0, nxy);			for (int k = 0; k < nxy; k++)				total += slice[k];		}		return total;	}}
\ No newline at end of file
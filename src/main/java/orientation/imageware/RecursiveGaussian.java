@@ -0,0 +1 @@
+package orientation.imageware;/** * Class RecursiveGaussian. Gaussian filter implemented as a cascade of * exponential filters (IIR), a causal and an anti-causal recursion per * pass, with mirror boundary conditions. *  * The filter runs in place on a 2D image stored as a flat row-major array, * the layout of the slices of an imageware. The rows are filtered one by one, * the columns by blocks of adjacent columns to read and write the image row * by row. The recursions are computed in double precision, the results are * identical to the ones of Convolver.convolveIIR applied on every row or * column. *  * Several co-registered images (channels) can be filtered in one sweep, * their signals are interleaved in the buffers and share the coefficients. *  * An instance can be shared by several threads, the buffers are allocated * by every call, never by pixel or by row. *  * @author Daniel Sage Biomedical Imaging Group Ecole Polytechnique Federale de *         Lausanne, Lausanne, Switzerland */public class RecursiveGaussian {	/** Number of columns filtered together in the vertical pass */	private static final int	BLOCK		= 16;	private static double		tolerance	= 10e-6;	private double				pole;	private int					passes;	private double				lambda;	/**	 * Constructor of a cascade of exponential filters.	 * 	 * @param pole	 *            pole of the exponential filters	 * @param passes	 *            number of exponential filters in cascade	 */	public RecursiveGaussian(double pole, int passes) {		this.pole = pole;		this.passes = passes;		lambda = 1.0;		for (int k = 0; k < passes; k++)			lambda = lambda * (1.0 - pole) * (1.0 - 1.0 / pole);	}	/**	 * Returns the pole of a cascade of 3 exponential filters which	 * approximates a Gaussian of standard deviation sigma.	 */	public static double getPole(double sigma) {		double s2 = sigma * sigma;		return 1.0 + (3.0 / s2) - (Math.sqrt(9.0 + 6.0 * s2) / s2);	}	/**	 * Filters the rows and then the columns of a float image in place.	 */	public void filter(float[] data, int nx, int ny) {		filterX(data, nx, ny);		filterY(data, nx, ny);	}	/**	 * Filters the rows and then the columns of a double image in place.	 */	public void filter(double[] data, int nx, int ny) {		filterX(data, nx, ny);		filterY(data, nx, ny);	}	/**	 * Filters the rows of a float image in place.	 */	public void filterX(float[] data, int nx, int ny) {		filterX(data, nx, 0, ny);	}	/**	 * Filters the rows y0 to y1-1 of a float image in place.	 */	public void filterX(float[] data, int nx, int y0, int y1) {		if (nx < 2)			return;		Horizon horizon = new Horizon(nx);		double row[] = new double[nx];		for (int y = y0; y < y1; y++) {			int offset = y * nx;			for (int x = 0; x < nx; x++)				row[x] = data[offset + x] * lambda;			filter(row, 0, 1, 1, nx, horizon);			for (int x = 0; x < nx; x++)				data[offset + x] = (float) row[x];		}	}	/**	 * Filters the rows of a double image in place.	 */	public void filterX(double[] data, int nx, int ny) {		filterX(data, nx, 0, ny);	}	/**	 * Filters the rows y0 to y1-1 of a double image in place.	 */	public void filterX(double[] data, int nx, int y0, int y1) {		if (nx < 2)			return;		Horizon horizon = new Horizon(nx);		for (int y = y0; y < y1; y++) {			int offset = y * nx;			for (int x = 0; x < nx; x++)				data[offset + x] = data[offset + x] * lambda;			filter(data, offset, 1, 1, nx, horizon);		}	}	/**	 * Filters the columns of a float image in place.	 */	public void filterY(float[] data, int nx, int ny) {		filterY(data, nx, ny, 0, nx);	}	/**	 * Filters the columns x0 to x1-1 of a float image in place.	 */	public void filterY(float[] data, int nx, int ny, int x0, int x1) {		if (ny < 2)			return;		Horizon horizon = new Horizon(ny);		double block[] = new double[ny * BLOCK];		for (int bx = x0; bx < x1; bx += BLOCK) {			int width = Math.min(BLOCK, x1 - bx);			for (int y = 0; y < ny; y++)				for (int b = 0, k = y * nx + bx, i = y * width; b < width; b++)					block[i++] = data[k++] * lambda;			filter(block, 0, width, width, ny, horizon);			for (int y = 0; y < ny; y++)				for (int b = 0, k = y * nx + bx, i = y * width; b < width; b++)					data[k++] = (float) block[i++];		}	}	/**	 * Filters the columns of a double image in place.	 */	public void filterY(double[] data, int nx, int ny) {		filterY(data, nx, ny, 0, nx);	}	/**	 * Filters the columns x0 to x1-1 of a double image in place.	 */	public void filterY(double[] data, int nx, int ny, int x0, int x1) {		if (ny < 2)			return;		Horizon horizon = new Horizon(ny);		double block[] = new double[ny * BLOCK];		for (int bx = x0; bx < x1; bx += BLOCK) {			int width = Math.min(BLOCK, x1 - bx);			for (int y = 0; y < ny; y++)				for (int b = 0, k = y * nx + bx, i = y * width; b < width; b++)					block[i++] = data[k++] * lambda;			filter(block, 0, width, width, ny, horizon);			for (int y = 0; y < ny; y++)				for (int b = 0, k = y * nx + bx, i = y * width; b < width; b++)					data[k++] = block[i++];		}	}	/**	 * Filters the rows y0 to y1-1 of several co-registered float images in	 * place, in one sweep. The channels share the coefficients and are	 * interleaved in the buffer of a row.	 */	public void filterX(float[][] channels, int nx, int y0, int y1) {		int nc = channels.length;		if (nx < 2)			return;		Horizon horizon = new Horizon(nx);		double row[] = new double[nx * nc];		for (int y = y0; y < y1; y++) {			int offset = y * nx;			for (int c = 0; c < nc; c++) {				float data[] = channels[c];				for (int x = 0, i = c; x < nx; x++, i += nc)					row[i] = data[offset + x] * lambda;			}			filter(row, 0, nc, nc, nx, horizon);			for (int c = 0; c < nc; c++) {				float data[] = channels[c];				for (int x = 0, i = c; x < nx; x++, i += nc)					data[offset + x] = (float) row[i];			}		}	}	/**	 * Filters the rows y0 to y1-1 of several co-registered double images in	 * place, in one sweep.	 */	public void filterX(double[][] channels, int nx, int y0, int y1) {		int nc = channels.length;		if (nx < 2)			return;		Horizon horizon = new Horizon(nx);		double row[] = new double[nx * nc];		for (int y = y0; y < y1; y++) {			int offset = y * nx;			for (int c = 0; c < nc; c++) {				double data[] = channels[c];				for (int x = 0, i = c; x < nx; x++, i += nc)					row[i] = data[offset + x] * lambda;			}			filter(row, 0, nc, nc, nx, horizon);			for (int c = 0; c < nc; c++) {				double data[] = channels[c];				for (int x = 0, i = c; x < nx; x++, i += nc)					data[offset + x] = row[i];			}		}	}	/**	 * Filters the columns x0 to x1-1 of several co-registered float images	 * in place, in one sweep. A block of columns of all the channels is	 * filtered together.	 */	public void filterY(float[][] channels, int nx, int ny, int x0, int x1) {		int nc = channels.length;		if (ny < 2)			return;		Horizon horizon = new Horizon(ny);		double block[] = new double[ny * BLOCK * nc];		for (int bx = x0; bx < x1; bx += BLOCK) {			int width = Math.min(BLOCK, x1 - bx);			int stride = width * nc;			for (int c = 0; c < nc; c++) {				float data[] = channels[c];				for (int y = 0; y < ny; y++)					for (int b = 0, k = y * nx + bx, i = y * stride + c * width; b < width; b++)						block[i++] = data[k++] * lambda;			}			filter(block, 0, stride, stride, ny, horizon);			for (int c = 0; c < nc; c++) {				float data[] = channels[c];				for (int y = 0; y < ny; y++)					for (int b = 0, k = y * nx + bx, i = y * stride + c * width; b < width; b++)						data[k++] = (float) block[i++];			}		}	}	/**	 * Filters the columns x0 to x1-1 of several co-registered double images	 * in place, in one sweep.	 */	public void filterY(double[][] channels, int nx, int ny, int x0, int x1) {		int nc = channels.length;		if (ny < 2)			return;		Horizon horizon = new Horizon(ny);		double block[] = new double[ny * BLOCK * nc];		for (int bx = x0; bx < x1; bx += BLOCK) {			int width = Math.min(BLOCK, x1 - bx);			int stride = width * nc;			for (int c = 0; c < nc; c++) {				double data[] = channels[c];				for (int y = 0; y < ny; y++)					for (int b = 0, k = y * nx + bx, i = y * stride + c * width; b < width; b++)						block[i++] = data[k++] * lambda;			}			filter(block, 0, stride, stride, ny, horizon);			for (int c = 0; c < nc; c++) {				double data[] = channels[c];				for (int y = 0; y < ny; y++)					for (int b = 0, k = y * nx + bx, i = y * stride + c * width; b < width; b++)						data[k++] = block[i++];			}		}	}	/**	 * Runs the passes on interleaved signals of length l: the sample n of the	 * signal b is at offset + n * stride + b, for b in [0, count).	 */	private void filter(double c[], int offset, int stride, int count, int l, Horizon horizon) {		double z = pole;		int last = offset + (l - 1) * stride;		for (int p = 0; p < passes; p++) {			// Causal initialization and recursion			for (int b = 0; b < count; b++) {				double sum = c[offset + b] + horizon.zn * c[last + b];				for (int n = 1, i = offset + stride + b; n < horizon.length - 1; n++, i += stride)					sum = sum + horizon.weights[n] * c[i];				c[offset + b] = sum / horizon.denominator;			}			for (int i = offset + stride; i <= last + count - 1; i++)				c[i] = c[i] + z * c[i - stride];			// Anti-causal initialization and recursion			for (int b = 0; b < count; b++)				c[last + b] = (z * c[last - stride + b] + c[last + b]) * z / (z * z - 1.0);			for (int i = last - 1; i >= offset; i--)				c[i] = z * (c[i + stride] - c[i]);		}	}	/**	 * Coefficients of the causal initialization with mirror boundary	 * conditions for a signal of length l.	 */	private class Horizon {		private double	zn;		private double	weights[];		private double	denominator;		private int		length;		private Horizon(int l) {			double z = pole;			double z1 = z;			zn = Math.pow(z, l - 1);			length = l;			if (0.0 < tolerance) {				length = 2 + (int) (Math.log(tolerance) / Math.log(Math.abs(z)));				length = (length < l) ? (length) : (l);			}			weights = new double[Math.max(1, length - 1)];			double zz = zn * zn;			for (int n = 1; n < length - 1; n++) {				zz = zz / z;				weights[n] = z1 + zz;				z1 = z1 * z;			}			denominator = 1.0 - Math.pow(z, 2 * l - 2);		}	}}
\ No newline at end of file
@@ -31,6 +31,7 @@
 package orientation.riesz;
 
 import orientation.fft.ComplexSignal;
+import orientation.fft.ComplexSignalFloat;
 import orientation.imageware.Builder;
 import orientation.imageware.ImageWare;
 
@@ -38,12 +39,22 @@ public class RieszFilter {
 
 	private ComplexSignal A[];
 	private ComplexSignal S[];
+	private ComplexSignalFloat AF[];
 	private String name[];
 	private int channels;
 	private int order;
 	private boolean cancelDC = false; // false to perfect reconstruction
 
 	public RieszFilter(int nx, int ny, int order, boolean cancelDC) {
+		this(nx, ny, order, cancelDC, false);
+	}
+
+	/**
+	* In single precision, only the analysis filters are stored, in float,
+	* each one rounded as soon as it is computed; the synthesis filters are
+	* their conjugates, computed on demand.
+	*/
+	public RieszFilter(int nx, int ny, int order, boolean cancelDC, boolean single) {
 		this.order = order;
 		this.cancelDC = cancelDC;
 		this.channels = order + 1;
@@ -77,20 +88,74 @@ public class RieszFilter {
 			A[k].multiply(coef);
 			A[k].imag[0] /= c;
 			A[k].real[0] /= c;
-			S[k] = A[k].conjugate();
+			if (single) {
+				if (AF == null)
+					AF = new ComplexSignalFloat[channels];
+				AF[k] = new ComplexSignalFloat(A[k]);
+				A[k] = null;
+			}
+			else
+				S[k] = A[k].conjugate();
+		}
+		if (single) {
+			A = null;
+			S = null;
 		}
 	}
 	public int getChannels() {
 		return channels;
 	}
 	
+	/**
+	* Returns the analysis filter, converted to double if the filter is built 
+	* in single precision.
+	*/
 	public ComplexSignal getAnalysis(int channel) {
+		if (A == null)
+			return toDouble(AF[channel]);
 		return A[channel];
 	}
 	
+	/**
+	* Returns the synthesis filter, converted to double if the filter is built 
+	* in single precision.
+	*/
 	public ComplexSignal getSynthesis(int channel) {
+		if (S == null)
+			return toDouble(AF[channel]).conjugate();
 		return S[channel];
 	}
+	
+	/**
+	* Returns the analysis filter in single precision, rounded to float if
+	* the filter is built in double precision.
+	*/
+	public ComplexSignalFloat getAnalysisFloat(int channel) {
+		if (AF == null)
+			return new ComplexSignalFloat(A[channel]);
+		return AF[channel];
+	}
+	
+	/**
+	* Returns the synthesis filter in single precision, rounded to float if
+	* the filter is built in double precision.
+	*/
+	public ComplexSignalFloat getSynthesisFloat(int channel) {
+		if (AF == null)
+			return new ComplexSignalFloat(S[channel]);
+		return AF[channel].conjugate();
+	}
+
+	/**
+	*/
+	private ComplexSignal toDouble(ComplexSignalFloat f) {
+		ComplexSignal out = new ComplexSignal(f.nx, f.ny);
+		for(int k=0; k<f.nx*f.ny; k++) {
+			out.real[k] = f.real[k];
+			out.imag[k] = f.imag[k];
+		}
+		return out;
+	}
 
 	public int getOrder() {
 		return order;
@@ -101,6 +166,8 @@ public class RieszFilter {
 	* parts of the analysis filter for a specific channel.
 	*/
 	public ImageWare getAnalysisVisible(int channel) {
+		if (A == null)
+			return new RieszFilter(AF[channel].nx, AF[channel].ny, order, cancelDC).getAnalysisVisible(channel);
 		int nx = A[channel].nx;
 		int ny = A[channel].ny;
 		ImageWare out = Builder.create(nx, ny, 1, ImageWare.FLOAT);
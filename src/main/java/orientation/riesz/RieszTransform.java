@@ -32,6 +32,8 @@ package orientation.riesz;
 
 import ij.IJ;
 import orientation.fft.ComplexSignal;
+import orientation.fft.ComplexSignalFloat;
+import orientation.fft.FFT2D;
 import orientation.imageware.Builder;
 import orientation.imageware.ImageWare;
 
@@ -39,17 +41,30 @@ public class RieszTransform {
 
 	private int nx;
 	private int ny;
+	private boolean single;
 	private RieszFilter filter;
 	
 	public RieszTransform(int nx, int ny, int order, boolean cancelDC) {
+		this(nx, ny, order, cancelDC, false);
+	}
+	
+	/**
+	* In single precision, the filters and the spectra are stored in float
+	* and the channels are float images, half the memory of the double 
+	* precision.
+	*/
+	public RieszTransform(int nx, int ny, int order, boolean cancelDC, boolean single) {
 		this.nx = nx;
 		this.ny = ny;
-		filter = new RieszFilter(nx, ny, order, cancelDC);
+		this.single = single;
+		filter = new RieszFilter(nx, ny, order, cancelDC, single);
 	}
 	
 	/**
 	*/
 	public ImageWare[] analysis(ImageWare image) {
+		if (single)
+			return analysisFloat(image);
 		int N = filter.getChannels();
 		double[] in = (image.convert(ImageWare.DOUBLE)).getSliceDouble(0);
 		ComplexSignal sin = new ComplexSignal(in, nx, ny);
@@ -67,9 +82,28 @@ public class RieszTransform {
 		return channelsReal;
 	}
 	
+	/**
+	*/
+	private ImageWare[] analysisFloat(ImageWare image) {
+		int N = filter.getChannels();
+		float[] in = (image.convert(ImageWare.FLOAT)).getSliceFloat(0);
+		ComplexSignalFloat fin = FFT2D.transform(new ComplexSignalFloat(in, nx, ny));
+		
+		ImageWare channelsReal[] = new ImageWare[N];
+		for(int k=0; k<N; k++) {
+			channelsReal[k] = Builder.create(nx, ny, 1, ImageWare.FLOAT);
+			ComplexSignalFloat fg = ComplexSignalFloat.multiply(fin, filter.getAnalysisFloat(k));
+			ComplexSignalFloat g = FFT2D.inverse(fg);
+			System.arraycopy(g.real, 0, channelsReal[k].getSliceFloat(0), 0, nx*ny);
+		}
+		return channelsReal;
+	}
+	
 	/**
 	*/
 	public ImageWare synthesis(ImageWare channels[]) {
+		if (single)
+			return synthesisFloat(channels);
 		int N = filter.getChannels();
 		if (N != channels.length) {
 			IJ.error("Not compatible stack of images for inverting Riesz Transform");
@@ -93,6 +127,32 @@ public class RieszTransform {
 		return out;
 	}
 
+	/**
+	* The synthesis filters are the conjugates of the analysis filters.
+	*/
+	private ImageWare synthesisFloat(ImageWare channels[]) {
+		int N = filter.getChannels();
+		if (N != channels.length) {
+			IJ.error("Not compatible stack of images for inverting Riesz Transform");
+			return null;
+		}
+
+		ComplexSignalFloat csum = new ComplexSignalFloat(nx, ny);
+		for(int k=0; k<N; k++) {
+			float[] in = (channels[k].convert(ImageWare.FLOAT)).getSliceFloat(0);
+			ComplexSignalFloat fg = FFT2D.transform(new ComplexSignalFloat(in, nx, ny));
+			fg.multiply(filter.getSynthesisFloat(k));
+			for(int i=0; i<nx*ny; i++) {
+				csum.real[i] += fg.real[i];
+				csum.imag[i] += fg.imag[i];
+			}
+		}
+		ComplexSignalFloat rsum = FFT2D.inverse(csum);
+		ImageWare out = Builder.create(nx, ny, 1, ImageWare.FLOAT);
+		System.arraycopy(rsum.real, 0, out.getSliceFloat(0), 0, nx*ny);
+		return out;
+	}
+
 	/**
 	*/
 	public RieszFilter getFilters() {
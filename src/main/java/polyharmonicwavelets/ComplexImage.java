@@ -29,7 +29,7 @@ import java.util.Random;
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.process.FloatProcessor;
-import orientation.fft.FFT1D;
+import orientation.fft.FFT2D;
 import orientation.imageware.ImageWare;
 
 /**
@@ -1486,49 +1486,27 @@ public class ComplexImage {
 	
 	/**
 	* Performs the 2D Fast Fourier Transform on this ComplexImage.
+	* The rows, then the columns, are transformed in parallel.
 	*/
 
 	public void FFT2D() {			
-		//perform FFT1D for each row
-		FFT1D FFTrow=new FFT1D(nx);
-		ComplexImage row = new ComplexImage(nx,1);
-		for(int y=0;y<ny;y++) {
-			row.getRowContent(y,this);
-			FFTrow.transform(row.real,row.imag,nx,0);
-			putRow(y,row);  
-		}	
-		//perform FFT1D for each column
-		ComplexImage column = new ComplexImage(1,ny);
-		FFT1D FFTcolumn=new FFT1D(ny);
-		for(int x=0;x<nx;x++) {
-			column.getColumnContent(x,this);
-			FFTcolumn.transform(column.real,column.imag,ny,0);
-			putColumn(x,column);
-		}	
+		if (imag == null)
+			imag = new double[nxy];
+		FFT2D.rows(real, imag, nx, ny, false);
+		FFT2D.columns(real, imag, nx, ny, false);
 	}
 
 	
 	/**
 	* Performs the 2D inverse Fast Fourier Transform on this ComplexImage.
+	* The rows, then the columns, are transformed in parallel.
 	*/
 	
 	public void iFFT2D() {	
-		//perform iFFT1D for each row
-		ComplexImage row = new ComplexImage(nx,1);
-		FFT1D FFTrow=new FFT1D(nx);
-		for(int y=0;y<ny;y++) {
-			row.getRowContent(y,this);
-			FFTrow.inverse(row.real,row.imag,nx,0);
-			putRow(y,row);  
-		}	
-		//perform iFFT1D for each column
-		ComplexImage column = new ComplexImage(1,ny);
-		FFT1D FFTcolumn=new FFT1D(ny);
-		for(int x=0;x<nx;x++) {
-			column.getColumnContent(x,this);
-			FFTcolumn.inverse(column.real,column.imag,ny,0);
-			putColumn(x,column);
-		}	
+		if (imag == null)
+			imag = new double[nxy];
+		FFT2D.rows(real, imag, nx, ny, true);
+		FFT2D.columns(real, imag, nx, ny, true);
 	}
 	
 		